@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+/**
+ * Inputs shared by the benchmarks. Texts are measured by a fixed-advance measurer, so the
+ * results exclude the cost of the real font.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+final class BenchmarkFixtures {
+    static final float TEXT_SIZE = 36f;
+    static final float PADDING = 6f;
+    static final int BOUNDED_WIDTH = 120;
+
+    private static final String TEXT = "A much longer badge text that has to be cut to fit. ";
+
+    /**
+     * Every char advances by the same whole-pixel width, like a monospace font measured by a
+     * paint without subpixel text, whose advances are rounded to pixels.
+     */
+    static final class FixedAdvanceMeasurer implements BadgeLayoutEngine.TextMeasurer {
+        private final float advance;
+
+        FixedAdvanceMeasurer(float advance) {
+            this.advance = advance;
+        }
+
+        @Override
+        public float measureText(String text) {
+            return text.length() * advance;
+        }
+
+        @Override
+        public int breakText(String text, float maxWidth) {
+            return Math.min(text.length(), (int) (maxWidth / advance));
+        }
+    }
+
+    static final FixedAdvanceMeasurer MEASURER =
+            new FixedAdvanceMeasurer(Math.round(TEXT_SIZE * 0.55f));
+    static final NumberGlyphs GLYPHS = new NumberGlyphs(MEASURER);
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * @return a text of the given number of chars
+     */
+    static String text(int length) {
+        final StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            builder.append(TEXT, 0, Math.min(TEXT.length(), length - builder.length()));
+        }
+        return builder.toString();
+    }
+
+    static int badgeType(String name) {
+        switch (name) {
+            case "onlyOneText":
+                return BadgeDrawable.TYPE_ONLY_ONE_TEXT;
+            case "withTwoText":
+                return BadgeDrawable.TYPE_WITH_TWO_TEXT;
+            case "withTwoTextComplementary":
+                return BadgeDrawable.TYPE_WITH_TWO_TEXT_COMPLEMENTARY;
+            default:
+                throw new IllegalArgumentException("Unknown badge type: " + name);
+        }
+    }
+
+    static int numberOverflow(String name) {
+        switch (name) {
+            case "ellipsis":
+                return BadgeDrawable.NUMBER_OVERFLOW_ELLIPSIS;
+            case "plus":
+                return BadgeDrawable.NUMBER_OVERFLOW_PLUS;
+            case "compact":
+                return BadgeDrawable.NUMBER_OVERFLOW_COMPACT;
+            default:
+                throw new IllegalArgumentException("Unknown number overflow: " + name);
+        }
+    }
+}
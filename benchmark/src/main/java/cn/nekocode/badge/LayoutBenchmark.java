@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lays out text badges of every type, with texts of 10, 100 and 1000 chars, both at their
+ * natural width and cut to bounds.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayoutBenchmark {
+    @Param({"onlyOneText", "withTwoText", "withTwoTextComplementary"})
+    public String type;
+
+    @Param({"10", "100", "1000"})
+    public int textLength;
+
+    // 0 lays out at the natural width, see BenchmarkFixtures.BOUNDED_WIDTH
+    @Param({"0", "120"})
+    public int boundsWidth;
+
+    private BadgeLayoutEngine.Params params;
+
+    @Setup
+    public void setUp() {
+        final String text = BenchmarkFixtures.text(textLength);
+        params = new BadgeLayoutEngine.Params.Builder()
+                .type(BenchmarkFixtures.badgeType(type))
+                .text1(text)
+                .text2(text)
+                .textSize(BenchmarkFixtures.TEXT_SIZE)
+                .padding(BenchmarkFixtures.PADDING, BenchmarkFixtures.PADDING,
+                        BenchmarkFixtures.PADDING, BenchmarkFixtures.PADDING,
+                        BenchmarkFixtures.PADDING)
+                .build();
+    }
+
+    @Benchmark
+    public BadgeLayoutEngine.Result layout() {
+        return BadgeLayoutEngine.layout(
+                params, BenchmarkFixtures.MEASURER, BenchmarkFixtures.GLYPHS, boundsWidth);
+    }
+}
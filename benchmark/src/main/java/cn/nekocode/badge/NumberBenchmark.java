@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lays out number badges and formats numbers, for every overflow format.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumberBenchmark {
+    @Param({"ellipsis", "plus", "compact"})
+    public String overflow;
+
+    @Param({"1", "42", "1234"})
+    public int number;
+
+    private int overflowFormat;
+    private BadgeLayoutEngine.Params params;
+    private final char[] chars = new char[NumberFormatter.MAX_LENGTH];
+    private int counter;
+
+    @Setup
+    public void setUp() {
+        overflowFormat = BenchmarkFixtures.numberOverflow(overflow);
+        params = new BadgeLayoutEngine.Params.Builder()
+                .type(BadgeDrawable.TYPE_NUMBER)
+                .number(number)
+                .numberOverflow(overflowFormat)
+                .textSize(BenchmarkFixtures.TEXT_SIZE)
+                .padding(BenchmarkFixtures.PADDING, BenchmarkFixtures.PADDING,
+                        BenchmarkFixtures.PADDING, BenchmarkFixtures.PADDING,
+                        BenchmarkFixtures.PADDING)
+                .build();
+    }
+
+    @Benchmark
+    public BadgeLayoutEngine.Result layout() {
+        return BadgeLayoutEngine.layout(
+                params, BenchmarkFixtures.MEASURER, BenchmarkFixtures.GLYPHS, 0);
+    }
+
+    /**
+     * Ignores the number parameter and counts up like an unread counter instead, crossing
+     * the max number.
+     */
+    @Benchmark
+    public int format() {
+        counter = (counter + 37) & 0xFFFF;
+        return NumberFormatter.format(
+                counter, BadgeDrawable.DEFAULT_MAX_NUMBER, overflowFormat, chars);
+    }
+}
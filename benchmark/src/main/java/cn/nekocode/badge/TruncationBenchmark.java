@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cuts texts of 10, 100 and 1000 chars to the bounded badge width, with the truncator and
+ * with the char-by-char loop it replaced, as a baseline.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TruncationBenchmark {
+    @Param({"10", "100", "1000"})
+    public int textLength;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = BenchmarkFixtures.text(textLength);
+    }
+
+    @Benchmark
+    public String ellipsize() {
+        return TextTruncator.ellipsize(
+                BenchmarkFixtures.MEASURER, text, BenchmarkFixtures.BOUNDED_WIDTH);
+    }
+
+    @Benchmark
+    public String legacyCutText() {
+        return legacyCutText(
+                BenchmarkFixtures.MEASURER, text, BenchmarkFixtures.BOUNDED_WIDTH);
+    }
+
+    /**
+     * The truncation of the library before {@link TextTruncator}: drops one char at a time
+     * and re-measures the concatenated text every time, so it is quadratic in the length.
+     */
+    static String legacyCutText(BadgeLayoutEngine.TextMeasurer measurer, String text,
+                                float width) {
+        if (measurer.measureText(text) <= width)
+            return text;
+
+        String suffix = "...";
+        while (measurer.measureText(text + suffix) > width) {
+            if (text.length() > 0)
+                text = text.substring(0, text.length() - 1);
+
+            if (text.length() == 0) {
+                suffix = suffix.substring(0, suffix.length() - 1);
+
+                if (suffix.length() == 0) break;
+            }
+        }
+
+        return text + suffix;
+    }
+}
@@ -0,0 +1,459 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.WeakHashMap;
+
+/**
+ * Process-wide texture atlas of rasterized badges, used by badges whose render mode is
+ * {@link BadgeDrawable#RENDER_MODE_ATLAS}. Badges are packed into a few large page bitmaps
+ * by a shelf allocator and drawn from their region with {@code drawBitmap(src, dst)}, so
+ * that a list of badges shares a few textures instead of uploading one per badge.
+ * <p>
+ * Pages are only written on the UI thread, as the render thread may be uploading a page
+ * while it is written. Off the UI thread, badges missing from the atlas are reported
+ * unavailable and drawn directly. A page is uploaded as a whole: adding a badge to a page
+ * that was already drawn uploads the full page again at the next frame, 4 MB for a 1024px
+ * page. Badges added within one frame share that upload, which is why
+ * {@link BadgePrefetcher} adds its badges at the next frame instead of one by one.
+ * <p>
+ * When all pages are full, the least recently drawn badges of the first page they free
+ * enough space in are evicted, and that page is compacted. Compaction re-packs the page
+ * into a spare page bitmap and keeps the old bitmap as the next spare, so the atlas holds
+ * one page more than {@link #getPageCount()}. Badges drawn from a compacted page are
+ * invalidated, and the spare is only reused two frames later, once their display lists
+ * were recorded again. Until then, badges that don't fit are drawn directly.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public final class BadgeAtlas {
+    public static final int DEFAULT_PAGE_SIZE = 1024;
+    public static final int DEFAULT_MAX_PAGES = 4;
+
+    static final int RESULT_UNAVAILABLE = 0;
+    static final int RESULT_HIT = 1;
+    static final int RESULT_MISS = 2;
+
+    // Transparent space between regions, so that filtering never samples a neighbour
+    private static final int GUTTER = 1;
+
+    // A compaction frees a quarter of a page more than needed, so that the next badges
+    // fit without compacting again
+    private static final int COMPACTION_HEADROOM = 4;
+
+    /**
+     * Draws a badge into its region, with the badge's top left corner at (0, 0).
+     */
+    interface Renderer {
+        void render(Canvas canvas);
+    }
+
+    private static final class Region {
+        private final Object key;
+        private final Rect rect = new Rect();
+        private Page page;
+
+        private Region(Object key) {
+            this.key = key;
+        }
+
+        private long area() {
+            return (long) (rect.width() + GUTTER) * (rect.height() + GUTTER);
+        }
+    }
+
+    private static final class Shelf {
+        private final int y;
+        private final int height;
+        private int x;
+
+        private Shelf(int y, int height) {
+            this.y = y;
+            this.height = height;
+        }
+    }
+
+    private static final class Page {
+        private final int size;
+        private final ArrayList<Shelf> shelves = new ArrayList<>();
+        private final ArrayList<Region> regions = new ArrayList<>();
+        // Badges drawn from the page, invalidated when it is compacted
+        private final WeakHashMap<BadgeDrawable, Boolean> users = new WeakHashMap<>();
+        private Bitmap bitmap;
+        private Canvas canvas;
+        private int nextShelfY;
+        private long liveArea;
+        private long pendingFree;
+
+        private Page(int size) {
+            this.size = size;
+            bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+            canvas = new Canvas(bitmap);
+        }
+
+        /**
+         * Places a region of the size, gutter included, on the shelf it wastes the least
+         * height of, or on a new shelf.
+         */
+        private boolean allocate(int width, int height, Rect out) {
+            Shelf best = null;
+            for (int i = 0, count = shelves.size(); i < count; i++) {
+                final Shelf shelf = shelves.get(i);
+                if (shelf.height >= height && size - shelf.x >= width &&
+                        (best == null || shelf.height < best.height)) {
+                    best = shelf;
+                }
+            }
+
+            if (best == null) {
+                if (nextShelfY + height > size) {
+                    return false;
+                }
+                best = new Shelf(nextShelfY, height);
+                shelves.add(best);
+                nextShelfY += height;
+            }
+
+            out.set(best.x, best.y, best.x + width - GUTTER, best.y + height - GUTTER);
+            best.x += width;
+            return true;
+        }
+    }
+
+    private static final Comparator<Region> BY_HEIGHT = new Comparator<Region>() {
+        @Override
+        public int compare(Region a, Region b) {
+            return b.rect.height() - a.rect.height();
+        }
+    };
+
+    private static final LinkedHashMap<Object, Region> REGIONS =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private static final ArrayList<Page> PAGES = new ArrayList<>();
+    private static final ArrayList<Region> TMP_REGIONS = new ArrayList<>();
+    private static final Rect TMP_RECT = new Rect();
+    private static final ArrayList<BadgeDrawable> STALE_USERS = new ArrayList<>();
+    private static final BadgeFrameScheduler.FrameCallback AFTER_COMPACTION =
+            new BadgeFrameScheduler.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    afterCompaction();
+                }
+            };
+    private static Bitmap spareBitmap;
+    private static Canvas spareCanvas;
+    private static int spareBusyFrames;
+    private static int pageSize = DEFAULT_PAGE_SIZE;
+    private static int maxPages = DEFAULT_MAX_PAGES;
+    private static long hitCount, missCount, evictionCount, compactionCount;
+
+    private BadgeAtlas() {
+    }
+
+    /**
+     * Draws the badge of the key from its region, rasterizing it first if needed.
+     *
+     * @return {@link #RESULT_UNAVAILABLE} if the badge doesn't fit a page, the caller
+     * draws it directly then
+     */
+    static synchronized int draw(Canvas canvas, BadgeDrawable user, Object key, int width,
+                                 int height, Rect dst, Paint paint, Renderer renderer) {
+        final int result = prepare(key, width, height, renderer);
+        if (result != RESULT_UNAVAILABLE) {
+            final Region region = REGIONS.get(key);
+            region.page.users.put(user, Boolean.TRUE);
+            canvas.drawBitmap(region.page.bitmap, region.rect, dst, paint);
+        }
+        return result;
+    }
+
+    /**
+     * Rasterizes the badge of the key into the atlas, unless it is already there. Only
+     * the UI thread writes pages, other threads get {@link #RESULT_UNAVAILABLE} on a miss.
+     */
+    static synchronized int prepare(Object key, int width, int height, Renderer renderer) {
+        if (REGIONS.get(key) != null) {
+            hitCount++;
+            return RESULT_HIT;
+        }
+
+        missCount++;
+        if (width + GUTTER > pageSize || height + GUTTER > pageSize ||
+                Looper.myLooper() != Looper.getMainLooper()) {
+            return RESULT_UNAVAILABLE;
+        }
+
+        final Region region = new Region(key);
+        if (!allocate(region, width + GUTTER, height + GUTTER)) {
+            return RESULT_UNAVAILABLE;
+        }
+
+        final Canvas pageCanvas = region.page.canvas;
+        final int saveCount = pageCanvas.save();
+        pageCanvas.clipRect(region.rect);
+        pageCanvas.translate(region.rect.left, region.rect.top);
+        renderer.render(pageCanvas);
+        pageCanvas.restoreToCount(saveCount);
+
+        REGIONS.put(key, region);
+        region.page.regions.add(region);
+        region.page.liveArea += region.area();
+        return RESULT_MISS;
+    }
+
+    private static boolean allocate(Region region, int width, int height) {
+        for (int i = 0, count = PAGES.size(); i < count; i++) {
+            final Page page = PAGES.get(i);
+            if (page.allocate(width, height, region.rect)) {
+                region.page = page;
+                return true;
+            }
+        }
+
+        if (PAGES.size() < maxPages) {
+            final Page page = new Page(pageSize);
+            PAGES.add(page);
+            if (page.allocate(width, height, region.rect)) {
+                region.page = page;
+                return true;
+            }
+        }
+
+        // All pages are full. The spare bitmap is still referenced by display lists of the
+        // last compaction, so nothing can be compacted before they are recorded again.
+        if (spareBusyFrames > 0) {
+            return false;
+        }
+
+        final Page page = findPageToCompact(
+                (long) width * height + (long) pageSize * pageSize / COMPACTION_HEADROOM);
+        if (page == null) {
+            return false;
+        }
+
+        // Evict the least recently drawn badges of the page, up to the one that frees
+        // enough space. The map is only changed once the victims are collected.
+        final ArrayList<Region> victims = TMP_REGIONS;
+        long freed = 0;
+        for (Region victim : REGIONS.values()) {
+            if (victim.page == page) {
+                victims.add(victim);
+                freed += victim.area();
+                if (freed >= page.pendingFree) {
+                    break;
+                }
+            }
+        }
+        for (int i = 0, count = victims.size(); i < count; i++) {
+            final Region victim = victims.get(i);
+            REGIONS.remove(victim.key);
+            page.regions.remove(victim);
+            page.liveArea -= victim.area();
+            evictionCount++;
+        }
+        victims.clear();
+
+        // A region that doesn't fit even now isn't worth a second compaction
+        compact(page);
+        if (page.allocate(width, height, region.rect)) {
+            region.page = page;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the first page in which evicting the least recently drawn badges frees the
+     * area, with that freed area in its {@code pendingFree}, or null
+     */
+    private static Page findPageToCompact(long area) {
+        for (int i = 0, count = PAGES.size(); i < count; i++) {
+            PAGES.get(i).pendingFree = 0;
+        }
+
+        for (Region victim : REGIONS.values()) {
+            final Page page = victim.page;
+            page.pendingFree += victim.area();
+            if ((long) page.size * page.size - page.liveArea + page.pendingFree >= area) {
+                return page;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Re-packs the live regions of the page into the spare bitmap, tallest first, and keeps
+     * the page's old bitmap as the next spare.
+     */
+    private static void compact(Page page) {
+        if (spareBitmap == null) {
+            spareBitmap = Bitmap.createBitmap(page.size, page.size, Bitmap.Config.ARGB_8888);
+            spareCanvas = new Canvas(spareBitmap);
+        } else {
+            spareBitmap.eraseColor(0);
+        }
+
+        final Bitmap oldBitmap = page.bitmap;
+        final Canvas oldCanvas = page.canvas;
+        page.bitmap = spareBitmap;
+        page.canvas = spareCanvas;
+        spareBitmap = oldBitmap;
+        spareCanvas = oldCanvas;
+        page.shelves.clear();
+        page.nextShelfY = 0;
+        compactionCount++;
+
+        final ArrayList<Region> regions = TMP_REGIONS;
+        regions.addAll(page.regions);
+        Collections.sort(regions, BY_HEIGHT);
+        page.regions.clear();
+        page.liveArea = 0;
+
+        for (int i = 0, count = regions.size(); i < count; i++) {
+            final Region region = regions.get(i);
+            TMP_RECT.set(region.rect);
+            if (page.allocate(TMP_RECT.width() + GUTTER, TMP_RECT.height() + GUTTER, region.rect)) {
+                page.canvas.drawBitmap(oldBitmap, TMP_RECT, region.rect, null);
+                page.regions.add(region);
+                page.liveArea += region.area();
+            } else {
+                REGIONS.remove(region.key);
+                evictionCount++;
+            }
+        }
+        regions.clear();
+
+        // Display lists that drew from the page still reference the spare now. Record them
+        // again at the next frame, and keep the spare untouched until the frame after.
+        STALE_USERS.addAll(page.users.keySet());
+        page.users.clear();
+        spareBusyFrames = 2;
+        BadgeFrameScheduler.postFrameCallback(AFTER_COMPACTION);
+    }
+
+    private static void afterCompaction() {
+        final ArrayList<BadgeDrawable> staleUsers;
+        synchronized (BadgeAtlas.class) {
+            if (--spareBusyFrames <= 0) {
+                spareBusyFrames = 0;
+                return;
+            }
+            staleUsers = new ArrayList<>(STALE_USERS);
+            STALE_USERS.clear();
+            BadgeFrameScheduler.postFrameCallback(AFTER_COMPACTION);
+        }
+
+        // Outside the lock, hosts may draw right away
+        for (int i = 0, count = staleUsers.size(); i < count; i++) {
+            staleUsers.get(i).invalidateSelf();
+        }
+    }
+
+    /**
+     * Sets the size of new pages. Existing pages are dropped.
+     */
+    public static synchronized void setPageSize(int size) {
+        if (size != pageSize) {
+            pageSize = size;
+            clear();
+        }
+    }
+
+    public static synchronized int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Sets the max number of pages, extra pages are dropped.
+     */
+    public static synchronized void setMaxPages(int pages) {
+        maxPages = pages;
+        while (PAGES.size() > maxPages) {
+            final Page page = PAGES.remove(PAGES.size() - 1);
+            for (Region region : page.regions) {
+                REGIONS.remove(region.key);
+                evictionCount++;
+            }
+        }
+    }
+
+    public static synchronized int getMaxPages() {
+        return maxPages;
+    }
+
+    public static synchronized int getPageCount() {
+        return PAGES.size();
+    }
+
+    /**
+     * @return the part of the pages' area used by live badges, between 0 and 1
+     */
+    public static synchronized float getFillRatio() {
+        if (PAGES.isEmpty()) {
+            return 0f;
+        }
+
+        long liveArea = 0;
+        for (Page page : PAGES) {
+            liveArea += page.liveArea;
+        }
+        return (float) liveArea / ((long) pageSize * pageSize * PAGES.size());
+    }
+
+    public static synchronized int getEntryCount() {
+        return REGIONS.size();
+    }
+
+    public static synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public static synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public static synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public static synchronized long getCompactionCount() {
+        return compactionCount;
+    }
+
+    /**
+     * Drops all pages. The bitmaps aren't recycled, display lists may still reference them.
+     */
+    public static synchronized void clear() {
+        REGIONS.clear();
+        PAGES.clear();
+        // The spare may still be referenced by display lists and is dropped as well. Its
+        // busy frames still run out, so that at most one frame callback is pending.
+        spareBitmap = null;
+        spareCanvas = null;
+        STALE_USERS.clear();
+    }
+}
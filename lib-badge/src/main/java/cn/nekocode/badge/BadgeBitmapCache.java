@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.graphics.Bitmap;
+
+/**
+ * Process-wide cache of pre-rasterized badges, used by badges whose render mode is
+ * {@link BadgeDrawable#RENDER_MODE_BITMAP_CACHE}. The cache is bounded by a byte budget
+ * and evicts the least recently drawn badges first.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public final class BadgeBitmapCache {
+    public static final long DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+
+    private static final BadgeLruCache<Object, Bitmap> CACHE =
+            new BadgeLruCache<Object, Bitmap>(DEFAULT_MAX_BYTES) {
+                @Override
+                long sizeOf(Object key, Bitmap value) {
+                    return (long) value.getRowBytes() * value.getHeight();
+                }
+            };
+
+    private BadgeBitmapCache() {
+    }
+
+    static Bitmap get(Object key) {
+        return CACHE.get(key);
+    }
+
+    static void put(Object key, Bitmap bitmap) {
+        CACHE.put(key, bitmap);
+    }
+
+    public static void setMaxBytes(long maxBytes) {
+        CACHE.resize(maxBytes);
+    }
+
+    public static long getMaxBytes() {
+        return CACHE.maxSize();
+    }
+
+    public static long getBytes() {
+        return CACHE.size();
+    }
+
+    public static int getEntryCount() {
+        return CACHE.entryCount();
+    }
+
+    public static long getHitCount() {
+        return CACHE.hitCount();
+    }
+
+    public static long getMissCount() {
+        return CACHE.missCount();
+    }
+
+    public static long getEvictionCount() {
+        return CACHE.evictionCount();
+    }
+
+    public static void clear() {
+        CACHE.evictAll();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Compares badges for list diffing, e.g. from {@code DiffUtil.Callback}:
+ * <pre>
+ * public boolean areContentsTheSame(int oldPosition, int newPosition) {
+ *     return oldBadges.get(oldPosition).sameVisualAs(newBadges.get(newPosition));
+ * }
+ *
+ * public Object getChangePayload(int oldPosition, int newPosition) {
+ *     return BadgeDiff.getChangePayload(oldBadges.get(oldPosition), newBadges.get(newPosition));
+ * }
+ * </pre>
+ * and in the adapter, {@link #apply} updates the bound badge in place with what changed.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public final class BadgeDiff {
+    public static final int CHANGE_NONE = 0;
+    /**
+     * The number or texts changed.
+     */
+    public static final int CHANGE_CONTENT = 1;
+    public static final int CHANGE_STYLE = 1 << 1;
+    public static final int CHANGE_TYPE = 1 << 2;
+    @IntDef(flag = true, value = {CHANGE_NONE, CHANGE_CONTENT, CHANGE_STYLE, CHANGE_TYPE})
+    public @interface Changes {}
+
+    private BadgeDiff() {
+    }
+
+    /**
+     * @return the changes from the old to the new badge, a combination of the CHANGE_* flags
+     */
+    @Changes
+    public static int diff(@NonNull BadgeDrawable oldBadge, @NonNull BadgeDrawable newBadge) {
+        if (oldBadge.sameVisualAs(newBadge)) {
+            return CHANGE_NONE;
+        }
+
+        int changes = CHANGE_NONE;
+        if (oldBadge.getBadgeType() != newBadge.getBadgeType()) {
+            changes |= CHANGE_TYPE;
+        }
+        if (!oldBadge.getStyle().equals(newBadge.getStyle())) {
+            changes |= CHANGE_STYLE;
+        }
+        if (oldBadge.getNumber() != newBadge.getNumber() ||
+                oldBadge.getMaxNumber() != newBadge.getMaxNumber() ||
+                oldBadge.getNumberOverflow() != newBadge.getNumberOverflow() ||
+                !sameText(oldBadge.getText1(), newBadge.getText1()) ||
+                !sameText(oldBadge.getText2(), newBadge.getText2())) {
+            changes |= CHANGE_CONTENT;
+        }
+        return changes;
+    }
+
+    /**
+     * @return the changes as a payload for {@code DiffUtil.Callback.getChangePayload()},
+     * or null if the badges look the same
+     */
+    @Nullable
+    public static Object getChangePayload(@NonNull BadgeDrawable oldBadge,
+                                          @NonNull BadgeDrawable newBadge) {
+        final int changes = diff(oldBadge, newBadge);
+        return changes != CHANGE_NONE ? Integer.valueOf(changes) : null;
+    }
+
+    /**
+     * Merges the payloads of {@code onBindViewHolder(holder, position, payloads)}.
+     */
+    @Changes
+    public static int changesOf(@NonNull Iterable<Object> payloads) {
+        int changes = CHANGE_NONE;
+        for (Object payload : payloads) {
+            if (payload instanceof Integer) {
+                changes |= (Integer) payload;
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Updates the target badge in place with the changed parts of the source badge, through
+     * a single edit. The render mode of the target is kept.
+     */
+    public static void apply(@NonNull BadgeDrawable target, @NonNull BadgeDrawable source,
+                             @Changes int changes) {
+        if (changes == CHANGE_NONE) {
+            return;
+        }
+
+        final BadgeDrawable.Editor editor = target.edit();
+        if ((changes & CHANGE_TYPE) != 0) {
+            editor.type(source.getBadgeType());
+        }
+        if ((changes & CHANGE_STYLE) != 0) {
+            editor.style(source.getStyle());
+        }
+        if ((changes & CHANGE_CONTENT) != 0) {
+            editor.number(source.getNumber())
+                    .maxNumber(source.getMaxNumber())
+                    .numberOverflow(source.getNumberOverflow())
+                    .text1(source.getText1())
+                    .text2(source.getText2());
+        }
+        editor.apply();
+    }
+
+    private static boolean sameText(String a, String b) {
+        return (a != null ? a : "").equals(b != null ? b : "");
+    }
+}
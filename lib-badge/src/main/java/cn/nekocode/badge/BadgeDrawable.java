@@ -17,21 +17,34 @@
 package cn.nekocode.badge;
 
 import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.ColorFilter;
 import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Picture;
 import android.graphics.PixelFormat;
 import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Region;
 import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
-import android.graphics.drawable.ShapeDrawable;
-import android.graphics.drawable.shapes.RoundRectShape;
+import android.os.Build;
+import android.support.annotation.AnyThread;
 import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.SpannableString;
 import android.text.Spanned;
-import android.text.style.ImageSpan;
+import android.util.AttributeSet;
+import android.view.View;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author nekocode (nekocode.cn@gmail.com)
@@ -44,39 +57,396 @@ public class BadgeDrawable extends Drawable {
     @IntDef({TYPE_NUMBER, TYPE_ONLY_ONE_TEXT, TYPE_WITH_TWO_TEXT, TYPE_WITH_TWO_TEXT_COMPLEMENTARY})
     public @interface  BadgeType {}
 
+    public static final int RENDER_MODE_DIRECT = 1;
+    public static final int RENDER_MODE_BITMAP_CACHE = 1 << 1;
+    public static final int RENDER_MODE_PICTURE = 1 << 2;
+    public static final int RENDER_MODE_ATLAS = 1 << 3;
+    public static final int RENDER_MODE_ALPHA_MASK = 1 << 4;
+    @IntDef({RENDER_MODE_DIRECT, RENDER_MODE_BITMAP_CACHE, RENDER_MODE_PICTURE, RENDER_MODE_ATLAS,
+            RENDER_MODE_ALPHA_MASK})
+    public @interface RenderMode {}
+
+    public static final int NUMBER_OVERFLOW_ELLIPSIS = 1;
+    public static final int NUMBER_OVERFLOW_PLUS = 1 << 1;
+    public static final int NUMBER_OVERFLOW_COMPACT = 1 << 2;
+    @IntDef({NUMBER_OVERFLOW_ELLIPSIS, NUMBER_OVERFLOW_PLUS, NUMBER_OVERFLOW_COMPACT})
+    public @interface NumberOverflow {}
+
+    public static final int DEFAULT_MAX_NUMBER = 99;
+    public static final long DEFAULT_NUMBER_ANIMATION_DURATION = 250;
+
     private static class Config {
+        private BadgeStyle style;
         private int badgeType = TYPE_NUMBER;
         private int number = 0;
+        private int maxNumber = DEFAULT_MAX_NUMBER;
+        private int numberOverflow = NUMBER_OVERFLOW_ELLIPSIS;
         private String text1 = "";
         private String text2 = "";
-        private float textSize = spToPixels(12);
-        private int badgeColor = 0xffCC3333;
-        private int textColor = 0xffFFFFFF;
-        private Typeface typeface = Typeface.DEFAULT_BOLD;
-        private float cornerRadius = dipToPixels(2);
-        private float paddingLeft = dipToPixels(2);
-        private float paddingTop = dipToPixels(2);
-        private float paddingRight = dipToPixels(2);
-        private float paddingBottom = dipToPixels(2);
-        private float paddingCenter = dipToPixels(3);
-        private int strokeWidth = (int) dipToPixels(1);
+        private int renderMode = RENDER_MODE_DIRECT;
+
+        private Config() {
+            style = BadgeStyle.getDefault();
+        }
+
+        private Config(Config other) {
+            set(other);
+        }
+
+        private void set(Config other) {
+            style = other.style;
+            badgeType = other.badgeType;
+            number = other.number;
+            maxNumber = other.maxNumber;
+            numberOverflow = other.numberOverflow;
+            text1 = other.text1;
+            text2 = other.text2;
+            renderMode = other.renderMode;
+        }
+
+        private BadgeLayoutEngine.Params toLayoutParams() {
+            return new BadgeLayoutEngine.Params.Builder()
+                    .type(badgeType)
+                    .number(number)
+                    .maxNumber(maxNumber)
+                    .numberOverflow(numberOverflow)
+                    .text1(text1)
+                    .text2(text2)
+                    .textSize(style.getTextSize())
+                    .padding(style.getPaddingLeft(), style.getPaddingTop(), style.getPaddingRight(),
+                            style.getPaddingBottom(), style.getPaddingCenter())
+                    .build();
+        }
+
+        /**
+         * Whether the badge measured from the other config has the same intrinsic size.
+         *
+         * @param scratch a buffer of {@link NumberFormatter#MAX_LENGTH} chars to format
+         *                numbers into
+         */
+        private boolean hasSameSizeAs(Config other, char[] scratch) {
+            return badgeType == other.badgeType &&
+                    style.hasSameMetricsAs(other.style) &&
+                    (badgeType == TYPE_NUMBER ?
+                            numberWidth(scratch) == other.numberWidth(scratch) :
+                            equal(text1, other.text1) && equal(text2, other.text2));
+        }
+
+        /**
+         * The width the number takes in a number badge, computed from the style's glyph
+         * table, so that a counter update only re-layouts views if the badge grows or shrinks.
+         */
+        private float numberWidth(char[] scratch) {
+            final int length = NumberFormatter.format(number, maxNumber, numberOverflow, scratch);
+            return Math.max(style.getTextSize(), style.getNumberGlyphs().measure(scratch, length));
+        }
+
+        /**
+         * Whether both configs draw the same badge, whatever their render modes. A null
+         * text draws like an empty one.
+         */
+        private boolean sameVisualAs(Config other) {
+            return badgeType == other.badgeType &&
+                    number == other.number &&
+                    maxNumber == other.maxNumber &&
+                    numberOverflow == other.numberOverflow &&
+                    style.equals(other.style) &&
+                    equal(nonNull(text1), nonNull(other.text1)) &&
+                    equal(nonNull(text2), nonNull(other.text2));
+        }
+
+        /**
+         * Like {@link #sameVisualAs(Config)}, but ignoring the colors.
+         */
+        private boolean sameShapeAs(Config other) {
+            return badgeType == other.badgeType &&
+                    number == other.number &&
+                    maxNumber == other.maxNumber &&
+                    numberOverflow == other.numberOverflow &&
+                    style.hasSameShapeAs(other.style) &&
+                    equal(nonNull(text1), nonNull(other.text1)) &&
+                    equal(nonNull(text2), nonNull(other.text2));
+        }
+
+        private int shapeHashCode() {
+            int result = style.shapeHashCode();
+            result = 31 * result + badgeType;
+            result = 31 * result + number;
+            result = 31 * result + maxNumber;
+            result = 31 * result + numberOverflow;
+            result = 31 * result + nonNull(text1).hashCode();
+            result = 31 * result + nonNull(text2).hashCode();
+            return result;
+        }
+
+        private int visualHashCode() {
+            int result = style.hashCode();
+            result = 31 * result + badgeType;
+            result = 31 * result + number;
+            result = 31 * result + maxNumber;
+            result = 31 * result + numberOverflow;
+            result = 31 * result + nonNull(text1).hashCode();
+            result = 31 * result + nonNull(text2).hashCode();
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Config)) return false;
+
+            final Config other = (Config) o;
+            return renderMode == other.renderMode && sameVisualAs(other);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * visualHashCode() + renderMode;
+        }
     }
     private Config config;
 
-    private ShapeDrawable backgroundDrawable;
-    private ShapeDrawable backgroundDrawableOfText2;
-    private ShapeDrawable backgroundDrawableOfText1;
+    /**
+     * Key of a rasterized badge in {@link BadgeBitmapCache} and {@link BadgeAtlas}. It holds a snapshot of the
+     * config, so later changes of the drawable never leak into the cached entry. Rasters are
+     * as large as the badge itself, not its bounds, and the cut width tells apart badges
+     * whose texts were cut to different bounds.
+     */
+    private static final class BitmapKey {
+        private final Config config;
+        private final int width;
+        private final int height;
+        private final int cutWidth;
+
+        private BitmapKey(Config config, int width, int height, int cutWidth) {
+            this.config = new Config(config);
+            this.width = width;
+            this.height = height;
+            this.cutWidth = cutWidth;
+        }
+
+        private boolean matches(Config config, int width, int height, int cutWidth) {
+            return this.width == width && this.height == height && this.cutWidth == cutWidth &&
+                    this.config.equals(config);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof BitmapKey)) return false;
+
+            final BitmapKey other = (BitmapKey) o;
+            return width == other.width && height == other.height && cutWidth == other.cutWidth &&
+                    config.equals(other.config);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = config.hashCode();
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + cutWidth;
+            return result;
+        }
+    }
+    private BitmapKey bitmapKey;
+    private Paint bitmapPaint;
+    // The area of the badge inside the bounds, which is all that cached bitmaps cover
+    private final Rect badgeRect = new Rect();
+
+    /**
+     * Key of one color layer of a badge, rasterized as an alpha mask into
+     * {@link BadgeBitmapCache}. Colors aren't part of the key, so recolored badges keep
+     * hitting the same masks.
+     */
+    private static final class MaskKey {
+        private final Config config;
+        private final int width;
+        private final int height;
+        private final int cutWidth;
+        private final int layer;
+
+        private MaskKey(Config config, int width, int height, int cutWidth, int layer) {
+            this.config = new Config(config);
+            this.width = width;
+            this.height = height;
+            this.cutWidth = cutWidth;
+            this.layer = layer;
+        }
+
+        private boolean matches(Config config, int width, int height, int cutWidth) {
+            return this.width == width && this.height == height && this.cutWidth == cutWidth &&
+                    this.config.sameShapeAs(config);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MaskKey)) return false;
+
+            final MaskKey other = (MaskKey) o;
+            return layer == other.layer && width == other.width && height == other.height &&
+                    cutWidth == other.cutWidth && config.sameShapeAs(other.config);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = config.shapeHashCode();
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + cutWidth;
+            result = 31 * result + layer;
+            return result;
+        }
+    }
+    private static final int MAX_LAYER_COUNT = 3;
+    private final MaskKey[] maskKeys = new MaskKey[MAX_LAYER_COUNT];
+    private Paint maskPaint;
+    private BadgeAtlas.Renderer atlasRenderer;
+
+    private Picture picture;
+    private boolean pictureValid;
+    private int recordedPaintGeneration;
+    private static long pictureRecordCount;
+    private static long pictureReuseCount;
+
+    /**
+     * The part of a badge that can be shared between drawables, see {@link #mutate()}.
+     * Paints and other render objects are shared through the config's {@link BadgeStyle}.
+     */
+    private static final class BadgeState extends ConstantState {
+        private final Config config;
+        private int alpha = 255;
+        private ColorFilter colorFilter;
+        private int changingConfigurations;
+
+        // Bumped on every config change, so that drawables sharing this state re-measure
+        private int generation;
+
+        // Bumped on every change of the config, alpha or color filter, so that recorded
+        // pictures are re-recorded
+        private int paintGeneration;
+
+        private BadgeState(Config config) {
+            this.config = config;
+        }
+
+        private BadgeState(BadgeState other) {
+            config = new Config(other.config);
+            alpha = other.alpha;
+            colorFilter = other.colorFilter;
+            changingConfigurations = other.changingConfigurations;
+        }
+
+        @NonNull
+        @Override
+        public Drawable newDrawable() {
+            return new BadgeDrawable(this);
+        }
+
+        @Override
+        public int getChangingConfigurations() {
+            return changingConfigurations;
+        }
+    }
+
+    // Outlines are built once per layout. The background is clipped to outside of the inset
+    // segments, a pixel inside their edges, so that only their antialiased edges are drawn
+    // over the background.
+    private final Path backgroundPath = new Path();
+    private final Path insetPath = new Path();
+    private final Path insetClipPath = new Path();
+    private boolean hasInsetClip;
+    private final RectF segmentRect = new RectF();
     private int badgeWidth;
     private int badgeHeight;
-    private float[] outerR = new float[]{0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f};
-    private float[] outerROfText1 = new float[]{0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f};
-    private float[] outerROfText2 = new float[]{0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f};
-    private Paint paint;
-    private Paint.FontMetrics fontMetrics;
+    private int naturalWidth;
+    private BadgeState state;
+    private boolean mutated;
+    private int measuredGeneration;
+    BadgePool.Lease poolLease;
+    private BadgeMetrics metrics;
+    private int contentHash;
+    private int contentHashGeneration;
+    private boolean contentHashValid;
+    private int[] truncateIterations;
+    private int drawCount;
+    private static Paint debugPaint;
+    private final AtomicReference<PendingContent> pendingContent = new AtomicReference<>();
+    private final BadgeFrameScheduler.FrameCallback applyPendingContent =
+            new BadgeFrameScheduler.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    applyPendingContent();
+                }
+            };
     private int text1Width, text2Width;
+    private String displayText1 = "", displayText2 = "";
+    private char[] numberChars;
+    private int numberLength;
+    // Numbers are formatted into it to compare their widths when the config changes
+    private final char[] numberScratch = new char[NumberFormatter.MAX_LENGTH];
+    private float text1X, text2X, textY;
+    private boolean measureDirty = true;
+    private boolean layoutDirty = true;
+
+    // Number transition started by animateNumber(), null when the number isn't animating
+    private NumberTransition numberTransition;
+    private long numberAnimationDuration = DEFAULT_NUMBER_ANIMATION_DURATION;
+    private boolean drawnSinceFrame;
+    private Path transitionPath;
+    private final Rect transitionRect = new Rect();
+    private final Rect transitionDirtyRect = new Rect();
+    private final BadgeFrameScheduler.FrameCallback numberTransitionFrame =
+            new BadgeFrameScheduler.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    onNumberTransitionFrame(frameTimeNanos);
+                }
+            };
+    private final BadgeFrameScheduler.FrameCallback prepareAtlasRegion =
+            new BadgeFrameScheduler.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    prepareAtlasRegion();
+                }
+            };
+
+    /**
+     * Content posted from any thread, merged until the next frame applies it.
+     */
+    private static final class PendingContent {
+        private final boolean hasNumber;
+        private final int number;
+        private final boolean hasTexts;
+        private final String text1;
+        private final String text2;
+
+        private PendingContent(boolean hasNumber, int number,
+                               boolean hasTexts, String text1, String text2) {
+            this.hasNumber = hasNumber;
+            this.number = number;
+            this.hasTexts = hasTexts;
+            this.text1 = text1;
+            this.text2 = text2;
+        }
+
+        private static PendingContent ofNumber(PendingContent pending, int number) {
+            return pending == null ?
+                    new PendingContent(true, number, false, null, null) :
+                    new PendingContent(true, number, pending.hasTexts, pending.text1, pending.text2);
+        }
+
+        private static PendingContent ofTexts(PendingContent pending, String text1, String text2) {
+            return pending == null ?
+                    new PendingContent(false, 0, true, text1, text2) :
+                    new PendingContent(pending.hasNumber, pending.number, true, text1, text2);
+        }
+    }
 
     public static class Builder {
         private final Config config;
+        private BadgeStyle.Builder styleBuilder;
 
         public Builder() {
             config = new Config();
@@ -86,6 +456,29 @@ public class BadgeDrawable extends Drawable {
             this.config = config;
         }
 
+        private BadgeStyle.Builder styleBuilder() {
+            if (styleBuilder == null) {
+                styleBuilder = config.style.buildUpon();
+            }
+            return styleBuilder;
+        }
+
+        /**
+         * @return the builder's own config, with the style attributes set on the builder
+         * built into its style. Not a copy, so it must not be kept.
+         */
+        private Config applyStyle() {
+            if (styleBuilder != null) {
+                config.style = styleBuilder.build();
+                styleBuilder = null;
+            }
+            return config;
+        }
+
+        private Config resolveConfig() {
+            return new Config(applyStyle());
+        }
+
         @NonNull
         public Builder type(@BadgeType int type) {
             config.badgeType = type;
@@ -98,6 +491,25 @@ public class BadgeDrawable extends Drawable {
             return this;
         }
 
+        /**
+         * Numbers greater than the max number are shown in the overflow format, 99 by default.
+         */
+        @NonNull
+        public Builder maxNumber(int maxNumber) {
+            config.maxNumber = maxNumber;
+            return this;
+        }
+
+        /**
+         * How numbers greater than the max number are shown: "…" (the default), e.g. "99+",
+         * or compact like "1.2k".
+         */
+        @NonNull
+        public Builder numberOverflow(@NumberOverflow int overflow) {
+            config.numberOverflow = overflow;
+            return this;
+        }
+
         @NonNull
         public Builder text1(@Nullable String text1) {
             config.text1 = text1;
@@ -110,88 +522,567 @@ public class BadgeDrawable extends Drawable {
             return this;
         }
 
+        /**
+         * Uses a shared style. Style attributes set afterwards are applied on top of it.
+         */
+        @NonNull
+        public Builder style(@NonNull BadgeStyle style) {
+            config.style = style;
+            styleBuilder = null;
+            return this;
+        }
+
         @NonNull
         public Builder textSize(float size) {
-            config.textSize = size;
+            styleBuilder().textSize(size);
             return this;
         }
 
         @NonNull
         public Builder badgeColor(int color) {
-            config.badgeColor = color;
+            styleBuilder().badgeColor(color);
             return this;
         }
 
         @NonNull
         public Builder textColor(int color) {
-            config.textColor = color;
+            styleBuilder().textColor(color);
             return this;
         }
 
         @NonNull
         public Builder typeFace(@Nullable Typeface typeface) {
-            config.typeface = typeface;
+            styleBuilder().typeFace(typeface);
+            return this;
+        }
+
+        /**
+         * Uses a font of the app's assets, loaded once and shared by all badges. Requires
+         * {@link BadgeTypefaces#init}.
+         */
+        @NonNull
+        public Builder typeFaceAsset(@NonNull String path) {
+            styleBuilder().typeFaceAsset(path);
             return this;
         }
 
         @NonNull
         public Builder cornerRadius(float radius) {
-            config.cornerRadius = radius;
+            styleBuilder().cornerRadius(radius);
             return this;
         }
 
         @NonNull
         public Builder padding(float l, float t, float r, float b, float c) {
-            config.paddingLeft = l;
-            config.paddingTop = t;
-            config.paddingRight = r;
-            config.paddingBottom = b;
-            config.paddingCenter = c;
+            styleBuilder().padding(l, t, r, b, c);
             return this;
         }
 
         @NonNull
         public Builder strokeWidth(int width) {
-            config.strokeWidth = width;
+            styleBuilder().strokeWidth(width);
             return this;
         }
 
+        @NonNull
+        public Builder renderMode(@RenderMode int mode) {
+            config.renderMode = mode;
+            return this;
+        }
+
+        /**
+         * @return the input of {@link BadgeLayoutEngine} for this badge, e.g. to precompute
+         * its layout on a background thread
+         */
+        @NonNull
+        public BadgeLayoutEngine.Params layoutParams() {
+            return resolveConfig().toLayoutParams();
+        }
+
         @NonNull
         public BadgeDrawable build() {
-            return new BadgeDrawable(config);
+            return new BadgeDrawable(new BadgeState(resolveConfig()));
+        }
+    }
+
+    /**
+     * Creates a badge with the default config, to be configured by {@link #inflate}. Prefer
+     * {@link Builder} or {@link BadgeInflater} in code.
+     */
+    public BadgeDrawable() {
+        this(new BadgeState(new Config()));
+    }
+
+    private BadgeDrawable(BadgeState state) {
+        setState(state);
+    }
+
+    private void setState(BadgeState state) {
+        this.state = state;
+        config = state.config;
+
+        measureDirty = true;
+        contentHashValid = false;
+    }
+
+    /**
+     * Reads the badge from the {@code BadgeDrawable} attributes. Called by
+     * {@link BadgeInflater}, and by the framework for {@code <cn.nekocode.badge.BadgeDrawable>}
+     * drawable resources on API 24+.
+     */
+    @Override
+    public void inflate(@NonNull Resources r, @NonNull XmlPullParser parser,
+                        @NonNull AttributeSet attrs, @Nullable Resources.Theme theme)
+            throws XmlPullParserException, IOException {
+        final TypedArray a = theme != null ?
+                theme.obtainStyledAttributes(attrs, R.styleable.BadgeDrawable, R.attr.badgeStyle, 0) :
+                r.obtainAttributes(attrs, R.styleable.BadgeDrawable);
+        try {
+            final Config config = new Config();
+            final BadgeStyle defaults = config.style;
+
+            config.badgeType = a.getInt(R.styleable.BadgeDrawable_badgeType, config.badgeType);
+            config.number = a.getInt(R.styleable.BadgeDrawable_badgeNumber, config.number);
+            config.maxNumber = a.getInt(R.styleable.BadgeDrawable_badgeMaxNumber, config.maxNumber);
+            config.numberOverflow =
+                    a.getInt(R.styleable.BadgeDrawable_badgeNumberOverflow, config.numberOverflow);
+            config.renderMode = a.getInt(R.styleable.BadgeDrawable_badgeRenderMode, config.renderMode);
+            final String text1 = a.getString(R.styleable.BadgeDrawable_badgeText1);
+            if (text1 != null) config.text1 = text1;
+            final String text2 = a.getString(R.styleable.BadgeDrawable_badgeText2);
+            if (text2 != null) config.text2 = text2;
+
+            // The individual paddings take precedence over badgePadding
+            final float padding = a.getDimension(R.styleable.BadgeDrawable_badgePadding, -1f);
+            final float paddingLeft = padding >= 0 ? padding : defaults.getPaddingLeft();
+            final float paddingTop = padding >= 0 ? padding : defaults.getPaddingTop();
+            final float paddingRight = padding >= 0 ? padding : defaults.getPaddingRight();
+            final float paddingBottom = padding >= 0 ? padding : defaults.getPaddingBottom();
+
+            final BadgeStyle.Builder style = defaults.buildUpon();
+            final String typefaceAsset = a.getString(R.styleable.BadgeDrawable_badgeTypefaceAsset);
+            if (typefaceAsset != null) {
+                style.typeFace(BadgeTypefaces.fromAsset(r.getAssets(), typefaceAsset));
+            }
+
+            config.style = style
+                    .badgeColor(a.getColor(R.styleable.BadgeDrawable_badgeColor,
+                            defaults.getBadgeColor()))
+                    .textColor(a.getColor(R.styleable.BadgeDrawable_badgeTextColor,
+                            defaults.getTextColor()))
+                    .textSize(a.getDimension(R.styleable.BadgeDrawable_badgeTextSize,
+                            defaults.getTextSize()))
+                    .cornerRadius(a.getDimension(R.styleable.BadgeDrawable_badgeCornerRadius,
+                            defaults.getCornerRadius()))
+                    .padding(
+                            a.getDimension(R.styleable.BadgeDrawable_badgePaddingLeft, paddingLeft),
+                            a.getDimension(R.styleable.BadgeDrawable_badgePaddingTop, paddingTop),
+                            a.getDimension(R.styleable.BadgeDrawable_badgePaddingRight, paddingRight),
+                            a.getDimension(R.styleable.BadgeDrawable_badgePaddingBottom, paddingBottom),
+                            a.getDimension(R.styleable.BadgeDrawable_badgePaddingCenter,
+                                    defaults.getPaddingCenter()))
+                    .strokeWidth(a.getDimensionPixelSize(R.styleable.BadgeDrawable_badgeStrokeWidth,
+                            defaults.getStrokeWidth()))
+                    .build();
+
+            setChangingConfigurations(getChangingConfigurations() | a.getChangingConfigurations());
+            setState(new BadgeState(config));
+            mutated = false;
+        } finally {
+            a.recycle();
+        }
+
+        invalidateSelf();
+    }
+
+    @Nullable
+    @Override
+    public ConstantState getConstantState() {
+        state.changingConfigurations = getChangingConfigurations();
+        return state;
+    }
+
+    /**
+     * Badges created from the same constant state share their config until
+     * mutated, so that e.g. changing the text of one badge doesn't affect the others.
+     */
+    @NonNull
+    @Override
+    public Drawable mutate() {
+        if (!mutated && super.mutate() == this) {
+            setState(new BadgeState(state));
+            mutated = true;
+        }
+        return this;
+    }
+
+    /**
+     * Collects several changes and applies them at once. The badge is re-measured and
+     * invalidated a single time, and only if something visible actually changed.
+     */
+    public final class Editor {
+        private final Config pending;
+        private BadgeStyle.Builder styleBuilder;
+
+        private Editor() {
+            pending = new Config(config);
+        }
+
+        private BadgeStyle.Builder styleBuilder() {
+            if (styleBuilder == null) {
+                styleBuilder = pending.style.buildUpon();
+            }
+            return styleBuilder;
+        }
+
+        @NonNull
+        public Editor type(@BadgeType int type) {
+            pending.badgeType = type;
+            return this;
+        }
+
+        @NonNull
+        public Editor number(int number) {
+            pending.number = number;
+            return this;
+        }
+
+        @NonNull
+        public Editor maxNumber(int maxNumber) {
+            pending.maxNumber = maxNumber;
+            return this;
+        }
+
+        @NonNull
+        public Editor numberOverflow(@NumberOverflow int overflow) {
+            pending.numberOverflow = overflow;
+            return this;
+        }
+
+        @NonNull
+        public Editor text1(@Nullable String text1) {
+            pending.text1 = text1;
+            return this;
+        }
+
+        @NonNull
+        public Editor text2(@Nullable String text2) {
+            pending.text2 = text2;
+            return this;
+        }
+
+        @NonNull
+        public Editor style(@NonNull BadgeStyle style) {
+            pending.style = style;
+            styleBuilder = null;
+            return this;
+        }
+
+        @NonNull
+        public Editor textSize(float size) {
+            styleBuilder().textSize(size);
+            return this;
+        }
+
+        @NonNull
+        public Editor badgeColor(int color) {
+            styleBuilder().badgeColor(color);
+            return this;
+        }
+
+        @NonNull
+        public Editor textColor(int color) {
+            styleBuilder().textColor(color);
+            return this;
+        }
+
+        @NonNull
+        public Editor typeFace(@Nullable Typeface typeface) {
+            styleBuilder().typeFace(typeface);
+            return this;
+        }
+
+        @NonNull
+        public Editor typeFaceAsset(@NonNull String path) {
+            styleBuilder().typeFaceAsset(path);
+            return this;
+        }
+
+        @NonNull
+        public Editor cornerRadius(float radius) {
+            styleBuilder().cornerRadius(radius);
+            return this;
+        }
+
+        @NonNull
+        public Editor padding(float l, float t, float r, float b, float c) {
+            styleBuilder().padding(l, t, r, b, c);
+            return this;
+        }
+
+        @NonNull
+        public Editor paddingLeft(float l) {
+            styleBuilder().paddingLeft(l);
+            return this;
+        }
+
+        @NonNull
+        public Editor paddingTop(float t) {
+            styleBuilder().paddingTop(t);
+            return this;
+        }
+
+        @NonNull
+        public Editor paddingRight(float r) {
+            styleBuilder().paddingRight(r);
+            return this;
+        }
+
+        @NonNull
+        public Editor paddingBottom(float b) {
+            styleBuilder().paddingBottom(b);
+            return this;
+        }
+
+        @NonNull
+        public Editor paddingCenter(float c) {
+            styleBuilder().paddingCenter(c);
+            return this;
+        }
+
+        @NonNull
+        public Editor strokeWidth(int width) {
+            styleBuilder().strokeWidth(width);
+            return this;
+        }
+
+        @NonNull
+        public Editor renderMode(@RenderMode int mode) {
+            pending.renderMode = mode;
+            return this;
+        }
+
+        /**
+         * @return true if the badge changed
+         */
+        public boolean apply() {
+            if (styleBuilder != null) {
+                pending.style = styleBuilder.build();
+            }
+            return applyConfig(pending);
+        }
+    }
+
+    @NonNull
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * Sets the number from any thread. Updates posted before the next frame are coalesced,
+     * so that the badge is re-measured and invalidated at most once per frame.
+     */
+    @AnyThread
+    public void postNumber(int number) {
+        PendingContent pending, merged;
+        do {
+            pending = pendingContent.get();
+            merged = PendingContent.ofNumber(pending, number);
+        } while (!pendingContent.compareAndSet(pending, merged));
+
+        if (pending == null) {
+            BadgeFrameScheduler.postFrameCallback(applyPendingContent);
+        }
+    }
+
+    /**
+     * Sets the texts from any thread, see {@link #postNumber(int)}.
+     */
+    @AnyThread
+    public void postTexts(@Nullable String text1, @Nullable String text2) {
+        PendingContent pending, merged;
+        do {
+            pending = pendingContent.get();
+            merged = PendingContent.ofTexts(pending, text1, text2);
+        } while (!pendingContent.compareAndSet(pending, merged));
+
+        if (pending == null) {
+            BadgeFrameScheduler.postFrameCallback(applyPendingContent);
         }
     }
 
-    private BadgeDrawable(Config config) {
-        paint = new Paint();
-        paint.setAntiAlias(true);
-        paint.setTypeface(config.typeface);
-        paint.setTextAlign(Paint.Align.CENTER);
-        paint.setStyle(Paint.Style.FILL);
-        paint.setAlpha(255);
+    private void applyPendingContent() {
+        final PendingContent pending = pendingContent.getAndSet(null);
+        if (pending == null) {
+            return;
+        }
+
+        final Editor editor = edit();
+        if (pending.hasNumber) {
+            editor.number(pending.number);
+        }
+        if (pending.hasTexts) {
+            editor.text1(pending.text1).text2(pending.text2);
+        }
+        editor.apply();
+    }
+
+    /**
+     * Sets the number of a {@link #TYPE_NUMBER} badge with an animation: digits that change
+     * roll in, the others slide to their new position, and the badge's width morphs. All
+     * animating badges advance on the same frame callback, and each one only invalidates
+     * the area of its badge. The animation stops on its own once the badge isn't drawn
+     * anymore, e.g. when it scrolls off-screen, and any other change ends it too.
+     */
+    public void animateNumber(int number) {
+        ensureMeasured();
+        if (getBadgeType() != TYPE_NUMBER || numberChars == null || number == getNumber()) {
+            setNumber(number);
+            return;
+        }
 
-        this.config = config;
+        final NumberGlyphs glyphs = config.style.getNumberGlyphs();
+        final NumberTransition transition =
+                new NumberTransition(numberAnimationDuration, number > getNumber());
+        transition.setStart(numberChars, numberLength, badgeWidth, glyphs);
 
-        setCornerRadius(config.cornerRadius);
-        RoundRectShape shape = new RoundRectShape(outerR, null, null);
-        backgroundDrawable = new ShapeDrawable(shape);
-        shape = new RoundRectShape(outerROfText1, null, null);
-        backgroundDrawableOfText1 = new ShapeDrawable(shape);
-        shape = new RoundRectShape(outerROfText2, null, null);
-        backgroundDrawableOfText2 = new ShapeDrawable(shape);
+        setNumber(number);
+        ensureMeasured();
+        transition.setEnd(numberChars, numberLength, badgeWidth, glyphs);
 
-        setTextSize(config.textSize);
-        measureBadge();
+        numberTransition = transition;
+        getTransitionRect(transitionRect);
+        drawnSinceFrame = true;
+        BadgeFrameScheduler.postFrameCallback(numberTransitionFrame);
+    }
+
+    public void setNumberAnimationDuration(long millis) {
+        numberAnimationDuration = millis;
+    }
+
+    public long getNumberAnimationDuration() {
+        return numberAnimationDuration;
+    }
+
+    private void onNumberTransitionFrame(long frameTimeNanos) {
+        final NumberTransition transition = numberTransition;
+        if (transition == null) {
+            return;
+        }
+
+        if (!drawnSinceFrame || !isVisible() || getCallback() == null) {
+            // Nobody drew the last frame, so skip to the end instead of animating unseen
+            endNumberTransition();
+            return;
+        }
+        drawnSinceFrame = false;
+
+        final boolean running = transition.update(frameTimeNanos);
+        transitionDirtyRect.set(transitionRect);
+        getTransitionRect(transitionRect);
+        transitionDirtyRect.union(transitionRect);
+
+        if (running) {
+            BadgeFrameScheduler.postFrameCallback(numberTransitionFrame);
+        } else {
+            numberTransition = null;
+        }
+        invalidateSelf();
+    }
+
+    void endNumberTransition() {
+        if (numberTransition != null) {
+            numberTransition = null;
+            BadgeFrameScheduler.removeFrameCallback(numberTransitionFrame);
+        }
+    }
+
+    /**
+     * The area of the transitioning badge, centered in the bounds like the badge itself.
+     * The width is limited to the bounds, which already fit the new number.
+     */
+    private void getTransitionRect(Rect out) {
+        final Rect bounds = getBounds();
+        final int width = Math.min(numberTransition.getBadgeWidth(), bounds.width());
+        final int left = bounds.left + (bounds.width() - width) / 2;
+        final int top = bounds.top + (bounds.height() - badgeHeight) / 2;
+        out.set(left, top, left + width, top + badgeHeight);
+    }
+
+    @NonNull
+    @Override
+    public Rect getDirtyBounds() {
+        // Views invalidate only this area when the drawable invalidates itself
+        return numberTransition != null ? transitionDirtyRect : super.getDirtyBounds();
+    }
+
+    private void drawNumberTransition(Canvas canvas) {
+        if (transitionPath == null) {
+            transitionPath = new Path();
+        }
+
+        final BadgeStyle style = config.style;
+        final Paint paint = style.getPaint();
+        paint.setColorFilter(state.colorFilter);
+
+        // The bounds may have changed since the last frame
+        getTransitionRect(transitionRect);
+        segmentRect.set(transitionRect);
+        transitionPath.reset();
+        transitionPath.addRoundRect(segmentRect, style.getNumberRadii(), Path.Direction.CW);
+        setPaintColor(paint, getBadgeColor(), state.alpha);
+        canvas.drawPath(transitionPath, paint);
+
+        // Rolling glyphs are cut at the edges of the badge
+        final int saveCount = canvas.save();
+        canvas.clipRect(transitionRect);
+        numberTransition.draw(canvas, paint, getTextColor(), state.alpha,
+                text1X, textY, badgeHeight);
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * Resets the badge to the config of the builder, reusing its paths. Content posted for
+     * the previous use of the badge is dropped.
+     */
+    void reconfigure(@NonNull Builder builder) {
+        pendingContent.set(null);
+        endNumberTransition();
+        // The config is copied into the badge's own, so the builder's isn't copied first
+        applyConfig(builder.applyStyle());
+    }
+
+    private boolean applyConfig(Config newConfig) {
+        if (newConfig.equals(config)) {
+            return false;
+        }
+
+        endNumberTransition();
+        final boolean sizeMayChange = !config.hasSameSizeAs(newConfig, numberScratch);
+        config.set(newConfig);
+        state.generation++;
+        state.paintGeneration++;
+        measureDirty = true;
+
+        invalidateSelf();
+        if (sizeMayChange) {
+            // The host view has to lay out again to pick up the new intrinsic size
+            final Callback callback = getCallback();
+            if (callback instanceof View) {
+                ((View) callback).requestLayout();
+            }
+        }
+
+        return true;
     }
 
     @NonNull
     public Builder buildUpon() {
-        return new Builder(config);
+        return new Builder(new Config(config));
     }
 
     public void setBadgeType(@BadgeType int type) {
-        config.badgeType = type;
-        measureBadge();
+        edit().type(type).apply();
     }
 
     @BadgeType
@@ -200,16 +1091,32 @@ public class BadgeDrawable extends Drawable {
     }
 
     public void setNumber(int number) {
-        config.number = number;
+        edit().number(number).apply();
     }
 
     public int getNumber() {
         return config.number;
     }
 
+    public void setMaxNumber(int maxNumber) {
+        edit().maxNumber(maxNumber).apply();
+    }
+
+    public int getMaxNumber() {
+        return config.maxNumber;
+    }
+
+    public void setNumberOverflow(@NumberOverflow int overflow) {
+        edit().numberOverflow(overflow).apply();
+    }
+
+    @NumberOverflow
+    public int getNumberOverflow() {
+        return config.numberOverflow;
+    }
+
     public void setText1(@Nullable String text1) {
-        config.text1 = text1;
-        measureBadge();
+        edit().text1(text1).apply();
     }
 
     @Nullable
@@ -218,8 +1125,7 @@ public class BadgeDrawable extends Drawable {
     }
 
     public void setText2(@Nullable String text2) {
-        config.text2 = text2;
-        measureBadge();
+        edit().text2(text2).apply();
     }
 
     @Nullable
@@ -227,324 +1133,726 @@ public class BadgeDrawable extends Drawable {
         return config.text2;
     }
 
-    public void setTextSize(float textSize) {
-        config.textSize = textSize;
-        paint.setTextSize(textSize);
-        fontMetrics = paint.getFontMetrics();
+    public void setStyle(@NonNull BadgeStyle style) {
+        edit().style(style).apply();
+    }
 
-        measureBadge();
+    @NonNull
+    public BadgeStyle getStyle() {
+        return config.style;
+    }
+
+    public void setTextSize(float textSize) {
+        edit().textSize(textSize).apply();
     }
 
     public float getTextSize() {
-        return config.textSize;
+        return config.style.getTextSize();
     }
 
     public void setBadgeColor(int color) {
-        config.badgeColor = color;
+        edit().badgeColor(color).apply();
     }
 
     public int getBadgeColor() {
-        return config.badgeColor;
+        return config.style.getBadgeColor();
     }
 
     public void setTextColor(int color) {
-        config.textColor = color;
+        edit().textColor(color).apply();
     }
 
     public int getTextColor() {
-        return config.textColor;
+        return config.style.getTextColor();
     }
 
     public void setTypeFace(@Nullable Typeface typeface) {
-        config.typeface = typeface;
-        paint.setTypeface(config.typeface);
+        edit().typeFace(typeface).apply();
     }
 
     @Nullable
     public Typeface getTypeFace() {
-        return config.typeface;
+        return config.style.getTypeFace();
     }
 
     public void setCornerRadius(float radius) {
-        config.cornerRadius = radius;
-        outerR[0] = outerR[1] = outerR[2] = outerR[3] =
-                outerR[4] = outerR[5] = outerR[6] = outerR[7] = radius;
-
-        outerROfText1[0] = outerROfText1[1] = outerROfText1[6] = outerROfText1[7] = radius;
-        outerROfText1[2] = outerROfText1[3] = outerROfText1[4] = outerROfText1[5] = 0f;
-
-        outerROfText2[0] = outerROfText2[1] = outerROfText2[6] = outerROfText2[7] = 0f;
-        outerROfText2[2] = outerROfText2[3] = outerROfText2[4] = outerROfText2[5] = radius;
+        edit().cornerRadius(radius).apply();
     }
 
     public float getCornerRadius() {
-        return config.cornerRadius;
+        return config.style.getCornerRadius();
     }
 
     public void setPadding(float l, float t, float r, float b, float c) {
-        config.paddingLeft = l;
-        config.paddingTop = t;
-        config.paddingRight = r;
-        config.paddingBottom = b;
-        config.paddingCenter = c;
-        measureBadge();
+        edit().padding(l, t, r, b, c).apply();
     }
 
     public void setPaddingLeft(float l) {
-        config.paddingLeft = l;
-        measureBadge();
+        edit().paddingLeft(l).apply();
     }
 
     public float getPaddingLeft() {
-        return config.paddingLeft;
+        return config.style.getPaddingLeft();
     }
 
     public void setPaddingTop(float t) {
-        config.paddingTop = t;
-        measureBadge();
+        edit().paddingTop(t).apply();
     }
 
     public float getPaddingTop() {
-        return config.paddingTop;
+        return config.style.getPaddingTop();
     }
 
     public void setPaddingRight(float r) {
-        config.paddingRight = r;
-        measureBadge();
+        edit().paddingRight(r).apply();
     }
 
     public float getPaddingRight() {
-        return config.paddingRight;
+        return config.style.getPaddingRight();
     }
 
     public void setPaddingBottom(float b) {
-        config.paddingBottom = b;
-        measureBadge();
+        edit().paddingBottom(b).apply();
     }
 
     public float getPaddingBottom() {
-        return config.paddingBottom;
+        return config.style.getPaddingBottom();
     }
 
     public void setPaddingCenter(float c) {
-        config.paddingCenter = c;
-        measureBadge();
+        edit().paddingCenter(c).apply();
     }
 
     public float getPaddingCenter() {
-        return config.paddingCenter;
+        return config.style.getPaddingCenter();
     }
 
     public void setStrokeWidth(int width) {
-        config.strokeWidth = width;
+        edit().strokeWidth(width).apply();
     }
 
     public int getStrokeWidth() {
-        return config.strokeWidth;
+        return config.style.getStrokeWidth();
     }
 
-    private void measureBadge() {
-        badgeHeight = (int) (getTextSize() + getPaddingTop() + getPaddingBottom());
-
-        String text1 = getText1(), text2 = getText2();
-        text1 = (text1 != null ? text1 : "");
-        text2 = (text2 != null ? text2 : "");
+    public void setRenderMode(@RenderMode int mode) {
+        edit().renderMode(mode).apply();
+    }
 
-        switch (getBadgeType()) {
-            case TYPE_ONLY_ONE_TEXT:
-                text1Width = (int) paint.measureText(text1);
-                badgeWidth = (int) (text1Width + getPaddingLeft() + getPaddingRight());
+    @RenderMode
+    public int getRenderMode() {
+        return config.renderMode;
+    }
 
-                setCornerRadius(getCornerRadius());
-                break;
+    private void measureBadge() {
+        final BadgeMetrics metrics = getActiveMetrics();
+        final long start = metrics != null ? System.nanoTime() : 0;
+        if (metrics != null) {
+            if (truncateIterations == null) {
+                truncateIterations = new int[1];
+            }
+            truncateIterations[0] = 0;
+        }
 
-            case TYPE_WITH_TWO_TEXT:
-                text1Width = (int) paint.measureText(text1);
-                text2Width = (int) paint.measureText(text2);
-                badgeWidth = (int) (text1Width + text2Width +
-                        getPaddingLeft() + getPaddingRight() + getPaddingCenter());
+        final BadgeStyle style = config.style;
+        final BadgeLayoutEngine.Result result = BadgeLayoutEngine.layout(
+                config.toLayoutParams(), style.getMeasurer(),
+                getBadgeType() == TYPE_NUMBER ? style.getNumberGlyphs() : null,
+                getBounds().width(), metrics != null ? truncateIterations : null);
+        badgeWidth = result.getBadgeWidth();
+        badgeHeight = result.getBadgeHeight();
+        naturalWidth = result.getNaturalWidth();
+        text1Width = result.getText1Width();
+        text2Width = result.getText2Width();
+        numberChars = result.getNumberChars();
+        numberLength = result.getNumberLength();
+        displayText1 = numberChars != null ? "" : result.getText1();
+        displayText2 = result.getText2();
+
+        measureDirty = false;
+        measuredGeneration = state.generation;
+        layoutBadge();
+
+        if (metrics != null) {
+            metrics.onMeasure(this, System.nanoTime() - start);
+            if (truncateIterations[0] > 0) {
+                metrics.onTruncate(this, truncateIterations[0]);
+            }
+        }
+    }
 
-                setCornerRadius(getCornerRadius());
-                break;
+    /**
+     * Places the backgrounds and the texts inside the current bounds. Everything draw()
+     * needs is computed here, so draw() itself only issues canvas calls.
+     */
+    private void layoutBadge() {
+        layoutDirty = false;
+        pictureValid = false;
+        final Rect bounds = getBounds();
+        final int marginTopAndBottom = (int) ((bounds.height() - badgeHeight) / 2f);
+        final int marginLeftAndRight = (int) ((bounds.width() - badgeWidth) / 2f);
+        final int badgeLeft = bounds.left + marginLeftAndRight;
+        final int badgeTop = bounds.top + marginTopAndBottom;
+        final int badgeRight = bounds.right - marginLeftAndRight;
+        final int badgeBottom = bounds.bottom - marginTopAndBottom;
+        final int strokeWidth = getStrokeWidth();
+        final BadgeStyle style = config.style;
+        final Paint.FontMetrics fontMetrics = style.getFontMetrics();
+
+        badgeRect.set(badgeLeft, badgeTop, badgeRight, badgeBottom);
+        backgroundPath.reset();
+        insetPath.reset();
+        insetClipPath.reset();
+        hasInsetClip = false;
+        segmentRect.set(badgeLeft, badgeTop, badgeRight, badgeBottom);
+        backgroundPath.addRoundRect(segmentRect,
+                getBadgeType() == TYPE_NUMBER ? style.getNumberRadii() : style.getOuterRadii(),
+                Path.Direction.CW);
+
+        // Texts are placed relative to the badge rather than the bounds, so that a cached
+        // bitmap looks the same whatever bounds it was drawn into
+        textY = (badgeTop + badgeBottom) / 2f - (fontMetrics.bottom + fontMetrics.top) / 2f;
 
+        switch (getBadgeType()) {
             case TYPE_WITH_TWO_TEXT_COMPLEMENTARY:
-                text1Width = (int) paint.measureText(text1);
-                text2Width = (int) paint.measureText(text2);
-                badgeWidth = (int) (text1Width + text2Width +
-                        getPaddingLeft() + getPaddingRight() + getPaddingCenter());
+                text1X = badgeLeft + getPaddingLeft() + text1Width / 2f;
+                text2X = badgeRight - getPaddingRight() - text2Width / 2f;
+
+                segmentRect.set(
+                        (int) (badgeLeft + getPaddingLeft() + text1Width + getPaddingCenter() / 2f),
+                        badgeTop + strokeWidth,
+                        badgeRight - strokeWidth,
+                        badgeBottom - strokeWidth);
+                addInset(segmentRect, style.getOuterRadiiOfText2());
+                break;
 
-                setCornerRadius(getCornerRadius());
+            case TYPE_WITH_TWO_TEXT:
+                text1X = badgeLeft + getPaddingLeft() + text1Width / 2f;
+                text2X = badgeRight - getPaddingRight() - text2Width / 2f;
+
+                segmentRect.set(
+                        badgeLeft + strokeWidth,
+                        badgeTop + strokeWidth,
+                        (int) (badgeLeft + getPaddingLeft() + text1Width +
+                                getPaddingCenter() / 2f - strokeWidth / 2f),
+                        badgeBottom - strokeWidth);
+                addInset(segmentRect, style.getOuterRadiiOfText1());
+                segmentRect.set(
+                        (int) (badgeLeft + getPaddingLeft() + text1Width +
+                                getPaddingCenter() / 2f + strokeWidth / 2f),
+                        badgeTop + strokeWidth,
+                        badgeRight - strokeWidth,
+                        badgeBottom - strokeWidth);
+                addInset(segmentRect, style.getOuterRadiiOfText2());
                 break;
 
+            case TYPE_ONLY_ONE_TEXT:
             case TYPE_NUMBER:
             default:
-                badgeWidth = (int) (getTextSize() + getPaddingLeft() + getPaddingRight());
-                setCornerRadius(badgeHeight);
-        }
-
-        int boundsWidth = getBounds().width();
-        if (boundsWidth > 0) {
-            // If the bounds has been set, adjust the badge size
-            switch (getBadgeType()) {
-                case TYPE_ONLY_ONE_TEXT:
-                    if(boundsWidth < badgeWidth) {
-                        text1Width = (int) (boundsWidth - getPaddingLeft() - getPaddingRight());
-                        text1Width = text1Width > 0 ? text1Width : 0;
-
-                        badgeWidth = boundsWidth;
-                    }
-                    break;
-
-                case TYPE_WITH_TWO_TEXT:
-                case TYPE_WITH_TWO_TEXT_COMPLEMENTARY:
-                    if(boundsWidth < badgeWidth) {
-                        if (boundsWidth < (text1Width + getPaddingLeft() + getPaddingRight())) {
-                            text1Width = (int) (boundsWidth - getPaddingLeft() - getPaddingRight());
-                            text1Width = text1Width > 0 ? text1Width : 0;
-                            text2Width = 0;
-
-                        } else {
-                            text2Width = (int) (boundsWidth - text1Width -
-                                    getPaddingLeft() - getPaddingRight() - getPaddingCenter());
-                            text2Width = text2Width > 0 ? text2Width : 0;
-                        }
-
-                        badgeWidth = boundsWidth;
-                    }
-                    break;
-
-                case TYPE_NUMBER:
-                default:
-            }
+                text1X = (badgeLeft + badgeRight) / 2f;
+        }
+    }
+
+    private void addInset(RectF rect, float[] radii) {
+        if (rect.width() <= 0 || rect.height() <= 0) {
+            return;
+        }
+
+        insetPath.addRoundRect(rect, radii, Path.Direction.CW);
+
+        // Rounded rects shrunk with the same radii stay inside the original outline
+        rect.inset(1f, 1f);
+        if (rect.width() > 0 && rect.height() > 0) {
+            insetClipPath.addRoundRect(rect, radii, Path.Direction.CW);
+            hasInsetClip = true;
         }
     }
 
     @Override
     public void setBounds(int left, int top, int right, int bottom) {
+        final Rect oldBounds = getBounds();
+        if (oldBounds.left == left && oldBounds.top == top &&
+                oldBounds.right == right && oldBounds.bottom == bottom) {
+            return;
+        }
+
+        // Only a bounds width narrower than the badge affects the measurement, other
+        // bounds changes just re-lay it out
+        final int oldWidth = oldBounds.width(), newWidth = right - left;
+        if (oldWidth != newWidth && !(fitsNaturally(oldWidth) && fitsNaturally(newWidth))) {
+            measureDirty = true;
+        }
+        layoutDirty = true;
+
         super.setBounds(left, top, right, bottom);
-        measureBadge();
+    }
+
+    private boolean fitsNaturally(int boundsWidth) {
+        return boundsWidth <= 0 || boundsWidth >= naturalWidth;
+    }
+
+    private void ensureMeasured() {
+        if (measureDirty || measuredGeneration != state.generation) {
+            measureBadge();
+        } else if (layoutDirty) {
+            layoutBadge();
+        }
     }
 
     @Override
     public void draw(@NonNull Canvas canvas) {
+        final BadgeMetrics metrics = getActiveMetrics();
+        final long start = metrics != null ? System.nanoTime() : 0;
+
+        ensureMeasured();
         Rect bounds = getBounds();
+        drawnSinceFrame = true;
+
+        if (numberTransition != null && !bounds.isEmpty()) {
+            drawNumberTransition(canvas);
+        } else if (getRenderMode() == RENDER_MODE_BITMAP_CACHE && !badgeRect.isEmpty()) {
+            drawCachedBitmap(canvas);
+        } else if (getRenderMode() == RENDER_MODE_ALPHA_MASK && !badgeRect.isEmpty()) {
+            drawMasks(canvas);
+        } else if (getRenderMode() == RENDER_MODE_ATLAS && !badgeRect.isEmpty() &&
+                drawFromAtlas(canvas)) {
+            // Drawn from the atlas region
+        } else if (getRenderMode() == RENDER_MODE_PICTURE && !bounds.isEmpty() &&
+                canDrawPicture(canvas)) {
+            drawPicture(canvas, bounds);
+        } else {
+            drawBadge(canvas, config.style.getPaint(), state.alpha, state.colorFilter);
+        }
+
+        if (metrics != null) {
+            metrics.onDraw(this, System.nanoTime() - start);
+        }
+        if (BadgeMetrics.isDebugOverlayEnabled()) {
+            drawDebugOverlay(canvas, bounds);
+        }
+    }
+
+    /**
+     * Paints the draw count of the badge over its top right corner, green for the first
+     * few draws, then yellow and red.
+     */
+    private void drawDebugOverlay(Canvas canvas, Rect bounds) {
+        drawCount++;
+        if (debugPaint == null) {
+            debugPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            debugPaint.setTextAlign(Paint.Align.RIGHT);
+        }
+
+        final float textSize = Math.max(8f, bounds.height() / 2f);
+        debugPaint.setTextSize(textSize);
+        final String text = String.valueOf(drawCount);
+        final float textWidth = debugPaint.measureText(text);
+
+        debugPaint.setColor(drawCount < 10 ? 0xc000c000 : drawCount < 60 ? 0xc0e0c000 : 0xc0e00000);
+        canvas.drawRect(bounds.right - textWidth - 2f, bounds.top,
+                bounds.right, bounds.top + textSize + 2f, debugPaint);
+        debugPaint.setColor(0xffFFFFFF);
+        canvas.drawText(text, bounds.right - 1f, bounds.top + textSize, debugPaint);
+    }
+
+    /**
+     * A hash of everything that affects how the badge looks: its style, type, number and
+     * texts, but not its render mode, alpha or color filter. It is cached until the badge
+     * changes, so adapters can cheaply compare badges on every bind.
+     */
+    public int contentHash() {
+        if (!contentHashValid || contentHashGeneration != state.generation) {
+            contentHash = config.visualHashCode();
+            contentHashGeneration = state.generation;
+            contentHashValid = true;
+        }
+        return contentHash;
+    }
+
+    /**
+     * @return whether the other badge looks the same, see {@link #contentHash()}
+     */
+    public boolean sameVisualAs(@Nullable BadgeDrawable other) {
+        if (other == null) {
+            return false;
+        }
+        if (other == this || other.config == config) {
+            return true;
+        }
+        return contentHash() == other.contentHash() && config.sameVisualAs(other.config);
+    }
+
+    /**
+     * Sets metrics for this badge only, overriding the global ones.
+     */
+    public void setMetrics(@Nullable BadgeMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Nullable
+    public BadgeMetrics getMetrics() {
+        return metrics;
+    }
+
+    private BadgeMetrics getActiveMetrics() {
+        return metrics != null ? metrics : BadgeMetrics.getGlobal();
+    }
+
+    private static boolean canDrawPicture(Canvas canvas) {
+        // Hardware accelerated canvases support drawPicture() since M
+        return !canvas.isHardwareAccelerated() || Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+    }
+
+    private void drawPicture(Canvas canvas, Rect bounds) {
+        if (picture == null || !pictureValid || recordedPaintGeneration != state.paintGeneration) {
+            if (picture == null) {
+                picture = new Picture();
+            }
+
+            final Canvas recordingCanvas = picture.beginRecording(bounds.width(), bounds.height());
+            recordingCanvas.translate(-bounds.left, -bounds.top);
+            drawBadge(recordingCanvas, config.style.getPaint(), state.alpha, state.colorFilter);
+            picture.endRecording();
+
+            pictureValid = true;
+            recordedPaintGeneration = state.paintGeneration;
+            pictureRecordCount++;
+            reportCacheLookup(BadgeMetrics.CACHE_PICTURE, false);
+        } else {
+            pictureReuseCount++;
+            reportCacheLookup(BadgeMetrics.CACHE_PICTURE, true);
+        }
+
+        final int saveCount = canvas.save();
+        canvas.translate(bounds.left, bounds.top);
+        canvas.drawPicture(picture);
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * @return how many times badges in {@link #RENDER_MODE_PICTURE} recorded their picture
+     */
+    public static long getPictureRecordCount() {
+        return pictureRecordCount;
+    }
+
+    /**
+     * @return how many times badges in {@link #RENDER_MODE_PICTURE} replayed a recorded picture
+     */
+    public static long getPictureReuseCount() {
+        return pictureReuseCount;
+    }
+
+    private void drawCachedBitmap(Canvas canvas) {
+        final Bitmap bitmap = getCachedBitmap();
+
+        if (bitmapPaint == null) {
+            bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        }
+        bitmapPaint.setAlpha(state.alpha);
+        bitmapPaint.setColorFilter(state.colorFilter);
+        canvas.drawBitmap(bitmap, badgeRect.left, badgeRect.top, bitmapPaint);
+    }
+
+    /**
+     * @return false if the badge doesn't fit an atlas page
+     */
+    private boolean drawFromAtlas(Canvas canvas) {
+        if (bitmapPaint == null) {
+            bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        }
+        bitmapPaint.setAlpha(state.alpha);
+        bitmapPaint.setColorFilter(state.colorFilter);
+
+        final int result = BadgeAtlas.draw(canvas, this, getBitmapKey(),
+                badgeRect.width(), badgeRect.height(), badgeRect, bitmapPaint, getAtlasRenderer());
+        if (result == BadgeAtlas.RESULT_UNAVAILABLE) {
+            return false;
+        }
+
+        reportCacheLookup(BadgeMetrics.CACHE_ATLAS, result == BadgeAtlas.RESULT_HIT);
+        return true;
+    }
+
+    private BadgeAtlas.Renderer getAtlasRenderer() {
+        if (atlasRenderer == null) {
+            atlasRenderer = new BadgeAtlas.Renderer() {
+                @Override
+                public void render(Canvas canvas) {
+                    // Like cached bitmaps, regions are rasterized opaque and unfiltered
+                    canvas.translate(-badgeRect.left, -badgeRect.top);
+                    drawBadge(canvas, config.style.newRasterPaint(), 255, null);
+                }
+            };
+        }
+        return atlasRenderer;
+    }
+
+    private BitmapKey getBitmapKey() {
+        final int width = badgeRect.width(), height = badgeRect.height();
+        final int cutWidth = getCutWidth();
+
+        // The key is checked against the live config, so every setter invalidates it
+        if (bitmapKey == null || !bitmapKey.matches(config, width, height, cutWidth)) {
+            bitmapKey = new BitmapKey(config, width, height, cutWidth);
+        }
+        return bitmapKey;
+    }
+
+    /**
+     * @return the bounds width the texts were cut to, or 0 if the badge fits its bounds
+     */
+    private int getCutWidth() {
+        final int boundsWidth = getBounds().width();
+        return fitsNaturally(boundsWidth) ? 0 : boundsWidth;
+    }
+
+    private Bitmap getCachedBitmap() {
+        final int width = badgeRect.width(), height = badgeRect.height();
+        final BitmapKey bitmapKey = getBitmapKey();
+
+        Bitmap bitmap = BadgeBitmapCache.get(bitmapKey);
+        reportCacheLookup(BadgeMetrics.CACHE_BITMAP, bitmap != null);
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+
+            // Alpha and color filter are applied when drawing the bitmap, not baked into it.
+            // The shared paint is UI-thread only, and this may run on a worker thread.
+            final Canvas bitmapCanvas = new Canvas(bitmap);
+            bitmapCanvas.translate(-badgeRect.left, -badgeRect.top);
+            drawBadge(bitmapCanvas, config.style.newRasterPaint(), 255, null);
+
+            BadgeBitmapCache.put(bitmapKey, bitmap);
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Draws the layers of the badge from their alpha masks, tinted with the layer colors.
+     */
+    private void drawMasks(Canvas canvas) {
+        if (maskPaint == null) {
+            maskPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        }
+        maskPaint.setColorFilter(state.colorFilter);
+
+        for (int layer = 0, count = getLayerCount(); layer < count; layer++) {
+            setPaintColor(maskPaint, getLayerColor(layer), state.alpha);
+            canvas.drawBitmap(getMask(layer), badgeRect.left, badgeRect.top, maskPaint);
+        }
+    }
+
+    private Bitmap getMask(int layer) {
+        final int width = badgeRect.width(), height = badgeRect.height();
+        final int cutWidth = getCutWidth();
+
+        MaskKey maskKey = maskKeys[layer];
+        if (maskKey == null || !maskKey.matches(config, width, height, cutWidth)) {
+            maskKey = new MaskKey(config, width, height, cutWidth, layer);
+            maskKeys[layer] = maskKey;
+        }
+
+        Bitmap mask = BadgeBitmapCache.get(maskKey);
+        reportCacheLookup(BadgeMetrics.CACHE_ALPHA_MASK, mask != null);
+        if (mask == null) {
+            mask = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+
+            // Only the coverage is kept, so any opaque color will do
+            final Paint paint = config.style.newRasterPaint();
+            paint.setColor(0xff000000);
+            final Canvas maskCanvas = new Canvas(mask);
+            maskCanvas.translate(-badgeRect.left, -badgeRect.top);
+            drawLayer(maskCanvas, paint, layer);
+
+            BadgeBitmapCache.put(maskKey, mask);
+        }
+
+        return mask;
+    }
+
+    private void reportCacheLookup(@BadgeMetrics.Cache int cache, boolean hit) {
+        final BadgeMetrics metrics = getActiveMetrics();
+        if (metrics != null) {
+            metrics.onCacheLookup(this, cache, hit);
+        }
+    }
 
-        int marginTopAndBottom = (int) ((bounds.height() - badgeHeight) / 2f);
-        int marginLeftAndRight = (int) ((bounds.width() - badgeWidth) / 2f);
+    /**
+     * Measures the badge ahead of its first draw and, if it is in
+     * {@link #RENDER_MODE_BITMAP_CACHE}, {@link #RENDER_MODE_ATLAS} or
+     * {@link #RENDER_MODE_ALPHA_MASK}, rasterizes it into the cache or the atlas. Used by
+     * {@link BadgePrefetcher} on worker threads, before the badge is handed to the UI.
+     * Atlas pages are only written on the UI thread, so atlas badges are added at the
+     * next frame, together with all badges prefetched until then.
+     */
+    void prewarm(boolean rasterize) {
+        ensureMeasured();
+
+        final int renderMode = getRenderMode();
+        if (rasterize && (renderMode == RENDER_MODE_BITMAP_CACHE ||
+                renderMode == RENDER_MODE_ATLAS || renderMode == RENDER_MODE_ALPHA_MASK)) {
+            if (getBounds().isEmpty()) {
+                setBounds(0, 0, badgeWidth, badgeHeight);
+                ensureMeasured();
+            }
 
-        backgroundDrawable.setBounds(
-                bounds.left + marginLeftAndRight,
-                bounds.top + marginTopAndBottom,
-                bounds.right - marginLeftAndRight,
-                bounds.bottom - marginTopAndBottom);
-        backgroundDrawable.getPaint().setColor(getBadgeColor());
-        backgroundDrawable.draw(canvas);
+            if (getBounds().isEmpty() || badgeRect.isEmpty()) {
+                return;
+            }
+            if (renderMode == RENDER_MODE_BITMAP_CACHE) {
+                getCachedBitmap();
+            } else if (renderMode == RENDER_MODE_ALPHA_MASK) {
+                for (int layer = 0, count = getLayerCount(); layer < count; layer++) {
+                    getMask(layer);
+                }
+            } else {
+                BadgeFrameScheduler.postFrameCallback(prepareAtlasRegion);
+            }
+        }
+    }
 
-        float textCx = bounds.centerX();
-        float textCy = bounds.centerY() - (fontMetrics.bottom + fontMetrics.top) / 2f;
+    private void prepareAtlasRegion() {
+        ensureMeasured();
+        if (getRenderMode() == RENDER_MODE_ATLAS && !badgeRect.isEmpty()) {
+            BadgeAtlas.prepare(getBitmapKey(), badgeRect.width(), badgeRect.height(),
+                    getAtlasRenderer());
+        }
+    }
 
-        String text1 = getText1(), text2 = getText2();
-        text1 = (text1 != null ? text1 : "");
-        text2 = (text2 != null ? text2 : "");
+    private void drawBadge(Canvas canvas, Paint paint, int alpha, ColorFilter colorFilter) {
+        paint.setColorFilter(colorFilter);
+
+        for (int layer = 0, count = getLayerCount(); layer < count; layer++) {
+            setPaintColor(paint, getLayerColor(layer), alpha);
+            drawLayer(canvas, paint, layer);
+        }
+    }
 
+    /**
+     * A badge is drawn as up to {@link #MAX_LAYER_COUNT} layers, each of a single color:
+     * the background, then the inset and the texts.
+     */
+    private int getLayerCount() {
         switch (getBadgeType()) {
-            case TYPE_ONLY_ONE_TEXT:
-                paint.setColor(getTextColor());
-                canvas.drawText(
-                        cutText(text1, text1Width),
-                        textCx,
-                        textCy,
-                        paint);
-                break;
+            case TYPE_WITH_TWO_TEXT_COMPLEMENTARY:
+            case TYPE_WITH_TWO_TEXT:
+                return 3;
+
+            default:
+                return 2;
+        }
+    }
+
+    private int getLayerColor(int layer) {
+        if (layer == 0) {
+            return getBadgeColor();
+        }
 
+        switch (getBadgeType()) {
             case TYPE_WITH_TWO_TEXT_COMPLEMENTARY:
-                paint.setColor(getTextColor());
-                canvas.drawText(
-                        text1,
-                        marginLeftAndRight + getPaddingLeft() + text1Width / 2f,
-                        textCy,
-                        paint);
-
-                backgroundDrawableOfText2.setBounds(
-                        (int) (bounds.left + marginLeftAndRight + getPaddingLeft() +
-                                text1Width + getPaddingCenter() / 2f),
-                        bounds.top + marginTopAndBottom+ getStrokeWidth(),
-                        bounds.width() - marginLeftAndRight - getStrokeWidth(),
-                        bounds.bottom - marginTopAndBottom - getStrokeWidth());
-                backgroundDrawableOfText2.getPaint().setColor(getTextColor());
-                backgroundDrawableOfText2.draw(canvas);
-
-                paint.setColor(getBadgeColor());
-                canvas.drawText(
-                        cutText(text2, text2Width),
-                        bounds.width() - marginLeftAndRight - getPaddingRight() - text2Width / 2f,
-                        textCy,
-                        paint);
+                return layer == 1 ? getTextColor() : getBadgeColor();
+
+            case TYPE_WITH_TWO_TEXT:
+                return layer == 1 ? 0xffFFFFFF : getBadgeColor();
+
+            default:
+                return getTextColor();
+        }
+    }
+
+    private void drawLayer(Canvas canvas, Paint paint, int layer) {
+        if (layer == 0) {
+            drawBackground(canvas, paint);
+            return;
+        }
+
+        switch (getBadgeType()) {
+            case TYPE_WITH_TWO_TEXT_COMPLEMENTARY:
+                if (layer == 1) {
+                    canvas.drawPath(insetPath, paint);
+                    canvas.drawText(displayText1, text1X, textY, paint);
+                } else {
+                    canvas.drawText(displayText2, text2X, textY, paint);
+                }
                 break;
 
             case TYPE_WITH_TWO_TEXT:
-                backgroundDrawableOfText1.setBounds(
-                        bounds.left + marginLeftAndRight + getStrokeWidth(),
-                        bounds.top + marginTopAndBottom+ getStrokeWidth(),
-                        (int) (bounds.left + marginLeftAndRight + getPaddingLeft() +
-                                text1Width + getPaddingCenter() / 2f - getStrokeWidth() / 2f),
-                        bounds.bottom - marginTopAndBottom - getStrokeWidth());
-                backgroundDrawableOfText1.getPaint().setColor(0xffFFFFFF);
-                backgroundDrawableOfText1.draw(canvas);
-
-                paint.setColor(getBadgeColor());
-                canvas.drawText(
-                        text1,
-                        text1Width / 2f + marginLeftAndRight + getPaddingLeft(),
-                        textCy,
-                        paint);
-
-                backgroundDrawableOfText2.setBounds(
-                        (int) (bounds.left + marginLeftAndRight + getPaddingLeft() +
-                                text1Width + getPaddingCenter() / 2f + getStrokeWidth() / 2f),
-                        bounds.top + marginTopAndBottom + getStrokeWidth(),
-                        bounds.width() - marginLeftAndRight - getStrokeWidth(),
-                        bounds.bottom - marginTopAndBottom - getStrokeWidth());
-                backgroundDrawableOfText2.getPaint().setColor(0xffFFFFFF);
-                backgroundDrawableOfText2.draw(canvas);
-
-                paint.setColor(getBadgeColor());
-                canvas.drawText(
-                        cutText(text2, text2Width),
-                        bounds.width() - marginLeftAndRight - getPaddingRight() - text2Width / 2f,
-                        textCy,
-                        paint);
+                if (layer == 1) {
+                    canvas.drawPath(insetPath, paint);
+                } else {
+                    canvas.drawText(displayText1, text1X, textY, paint);
+                    canvas.drawText(displayText2, text2X, textY, paint);
+                }
                 break;
 
+            case TYPE_ONLY_ONE_TEXT:
             case TYPE_NUMBER:
             default:
-                paint.setColor(getTextColor());
-                canvas.drawText(
-                        cutNumber(getNumber(), badgeWidth),
-                        textCx,
-                        textCy,
-                        paint);
+                if (numberChars != null) {
+                    canvas.drawText(numberChars, 0, numberLength, text1X, textY, paint);
+                } else {
+                    canvas.drawText(displayText1, text1X, textY, paint);
+                }
+        }
+    }
+
+    private void drawBackground(Canvas canvas, Paint paint) {
+        // Hardware accelerated canvases support clipPath() since JB MR2, before that the
+        // insets are simply drawn over the whole background
+        if (!hasInsetClip || (canvas.isHardwareAccelerated() &&
+                Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2)) {
+            canvas.drawPath(backgroundPath, paint);
+            return;
+        }
+
+        final int saveCount = canvas.save();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            canvas.clipOutPath(insetClipPath);
+        } else {
+            canvas.clipPath(insetClipPath, Region.Op.DIFFERENCE);
+        }
+        canvas.drawPath(backgroundPath, paint);
+        canvas.restoreToCount(saveCount);
+    }
+
+    private static void setPaintColor(Paint paint, int color, int alpha) {
+        paint.setColor(color);
+        if (alpha != 255) {
+            paint.setAlpha((color >>> 24) * alpha / 255);
         }
     }
 
     @Override
     public int getIntrinsicWidth() {
+        ensureMeasured();
         return badgeWidth;
     }
 
     @Override
     public int getIntrinsicHeight() {
+        ensureMeasured();
         return badgeHeight;
     }
 
+    /**
+     * @return the width of the badge when its bounds don't limit it
+     */
+    int getNaturalWidth() {
+        ensureMeasured();
+        return naturalWidth;
+    }
+
     @Override
     public void setAlpha(int alpha) {
-        paint.setAlpha(alpha);
+        state.alpha = alpha;
+        state.paintGeneration++;
     }
 
     @Override
     public void setColorFilter(ColorFilter colorFilter) {
-        paint.setColorFilter(colorFilter);
+        state.colorFilter = colorFilter;
+        state.paintGeneration++;
     }
 
     @Override
@@ -552,48 +1860,18 @@ public class BadgeDrawable extends Drawable {
         return PixelFormat.TRANSLUCENT;
     }
 
-    private String cutNumber(int number, int width) {
-        String text = String.valueOf(number);
-        if (paint.measureText(text) < width)
-            return text;
-
-        return "…";
-    }
-
-    private String cutText(String text, int width) {
-        if (paint.measureText(text) <= width)
-            return text;
-
-        String suffix = "...";
-        while(paint.measureText(text + suffix) > width) {
-            if(text.length() > 0)
-                text = text.substring(0, text.length() - 1);
-
-            if(text.length() == 0) {
-                suffix = suffix.substring(0, suffix.length() - 1);
-
-                if(suffix.length() == 0) break;
-            }
-        }
-
-        return text + suffix;
-    }
-
     public SpannableString toSpannable() {
         final SpannableString spanStr = new SpannableString(" ");
-        spanStr.setSpan(new ImageSpan(this, ImageSpan.ALIGN_BOTTOM), 0, 1, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-        setBounds(0, 0, getIntrinsicWidth(), getIntrinsicHeight());
+        spanStr.setSpan(new BadgeSpan(this, BadgeSpan.ALIGN_BOTTOM), 0, 1, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
 
         return spanStr;
     }
 
-    private static float dipToPixels(float dipValue) {
-        final float scale = Resources.getSystem().getDisplayMetrics().density;
-        return dipValue * scale + 0.5f;
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
     }
 
-    private static float spToPixels(float spValue) {
-        final float fontScale = Resources.getSystem().getDisplayMetrics().scaledDensity;
-        return spValue * fontScale + 0.5f;
+    private static String nonNull(String text) {
+        return text != null ? text : "";
     }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+/**
+ * The render objects that only depend on a (typeface, text size) pair: the draw paint, its
+ * font metrics, a text measurer and the number glyph widths. Styles that only differ in
+ * colors, paddings or corners share one font.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+final class BadgeFont {
+    private static final int MAX_FONTS = 64;
+
+    private static final class Key {
+        private final Typeface typeface;
+        private final float textSize;
+
+        private Key(Typeface typeface, float textSize) {
+            this.typeface = typeface;
+            this.textSize = textSize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            final Key other = (Key) o;
+            return Float.compare(textSize, other.textSize) == 0 &&
+                    (typeface == null ? other.typeface == null : typeface.equals(other.typeface));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = typeface != null ? typeface.hashCode() : 0;
+            result = 31 * result + Float.floatToIntBits(textSize);
+            return result;
+        }
+    }
+
+    // Styles keep their font, so an evicted font is only not shared with new styles anymore
+    private static final BadgeLruCache<Key, BadgeFont> FONTS = new BadgeLruCache<>(MAX_FONTS);
+
+    private final Typeface typeface;
+    private final float textSize;
+    private final Paint paint;
+    private final Paint.FontMetrics fontMetrics;
+    private final PaintTextMeasurer measurer;
+    private volatile NumberGlyphs numberGlyphs;
+
+    private BadgeFont(Typeface typeface, float textSize) {
+        this.typeface = typeface;
+        this.textSize = textSize;
+        paint = newPaint();
+        fontMetrics = paint.getFontMetrics();
+        measurer = new PaintTextMeasurer(typeface, textSize);
+    }
+
+    static BadgeFont get(Typeface typeface, float textSize) {
+        final Key key = new Key(typeface, textSize);
+        synchronized (FONTS) {
+            BadgeFont font = FONTS.get(key);
+            if (font == null) {
+                font = new BadgeFont(typeface, textSize);
+                FONTS.put(key, font);
+            }
+            return font;
+        }
+    }
+
+    /**
+     * The shared draw paint. It must only be used on the UI thread, and callers set its
+     * color, alpha and color filter before every use.
+     */
+    Paint getPaint() {
+        return paint;
+    }
+
+    /**
+     * Creates a new paint of this font. Unlike copying the shared paint, this only reads
+     * final fields, so it is safe on any thread, e.g. to rasterize badges on workers.
+     */
+    Paint newPaint() {
+        final Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setTypeface(typeface);
+        paint.setTextAlign(Paint.Align.CENTER);
+        paint.setStyle(Paint.Style.FILL);
+        paint.setTextSize(textSize);
+        return paint;
+    }
+
+    Typeface getTypeface() {
+        return typeface;
+    }
+
+    float getTextSize() {
+        return textSize;
+    }
+
+    Paint.FontMetrics getFontMetrics() {
+        return fontMetrics;
+    }
+
+    /**
+     * A thread-safe measurer of this font.
+     */
+    PaintTextMeasurer getMeasurer() {
+        return measurer;
+    }
+
+    /**
+     * The digit widths of this font, measured the first time a number badge is laid out.
+     */
+    NumberGlyphs getNumberGlyphs() {
+        NumberGlyphs glyphs = numberGlyphs;
+        if (glyphs == null) {
+            // Racing threads at worst measure the same glyphs twice
+            glyphs = new NumberGlyphs(measurer);
+            numberGlyphs = glyphs;
+        }
+        return glyphs;
+    }
+}
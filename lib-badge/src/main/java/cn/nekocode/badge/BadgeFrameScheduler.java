@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.RequiresApi;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+/**
+ * Runs callbacks on the main thread at the next frame, through {@link Choreographer} on
+ * API 16+ and a main thread handler aligned to 16ms ticks before. All callbacks posted
+ * before a frame run in the same frame.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+final class BadgeFrameScheduler {
+    private static final long FRAME_MILLIS = 16;
+
+    interface FrameCallback {
+        /**
+         * Called on the main thread.
+         */
+        void doFrame(long frameTimeNanos);
+    }
+
+    private static final Object LOCK = new Object();
+    private static final Handler HANDLER = new Handler(Looper.getMainLooper());
+    private static ArrayList<FrameCallback> pending = new ArrayList<>();
+    private static ArrayList<FrameCallback> running = new ArrayList<>();
+    private static boolean scheduled;
+
+    private static final Runnable SCHEDULE_FRAME = new Runnable() {
+        @Override
+        public void run() {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                ChoreographerFrame.post();
+            } else {
+                HANDLER.postDelayed(RUN_FRAME,
+                        FRAME_MILLIS - SystemClock.uptimeMillis() % FRAME_MILLIS);
+            }
+        }
+    };
+
+    private static final Runnable RUN_FRAME = new Runnable() {
+        @Override
+        public void run() {
+            doFrame(System.nanoTime());
+        }
+    };
+
+    /**
+     * Choreographer is only referenced from here, so that the class isn't loaded on
+     * older platforms.
+     */
+    @RequiresApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class ChoreographerFrame {
+        private static final Choreographer.FrameCallback CALLBACK =
+                new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        BadgeFrameScheduler.doFrame(frameTimeNanos);
+                    }
+                };
+
+        static void post() {
+            Choreographer.getInstance().postFrameCallback(CALLBACK);
+        }
+    }
+
+    private BadgeFrameScheduler() {
+    }
+
+    /**
+     * Runs the callback once at the next frame. Can be called from any thread.
+     */
+    static void postFrameCallback(FrameCallback callback) {
+        synchronized (LOCK) {
+            pending.add(callback);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            SCHEDULE_FRAME.run();
+        } else {
+            HANDLER.post(SCHEDULE_FRAME);
+        }
+    }
+
+    static void removeFrameCallback(FrameCallback callback) {
+        synchronized (LOCK) {
+            pending.remove(callback);
+        }
+    }
+
+    private static void doFrame(long frameTimeNanos) {
+        final ArrayList<FrameCallback> callbacks;
+        synchronized (LOCK) {
+            // Swap the lists, callbacks posted while running go to the next frame
+            callbacks = pending;
+            pending = running;
+            running = callbacks;
+            scheduled = false;
+        }
+
+        for (int i = 0, size = callbacks.size(); i < size; i++) {
+            callbacks.get(i).doFrame(frameTimeNanos);
+        }
+        callbacks.clear();
+    }
+}
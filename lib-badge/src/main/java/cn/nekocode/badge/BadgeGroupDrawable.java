@@ -0,0 +1,405 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Lays out several badges in a row, or wrapped into lines, and draws them in a single
+ * {@link #draw(Canvas)}. Badges of the same {@link BadgeStyle} share its paint. Badges
+ * that don't fit the bounds are collapsed into a "+N more" badge.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public class BadgeGroupDrawable extends Drawable implements Drawable.Callback {
+    public static final int LAYOUT_HORIZONTAL = 1;
+    public static final int LAYOUT_WRAP = 1 << 1;
+    @IntDef({LAYOUT_HORIZONTAL, LAYOUT_WRAP})
+    public @interface GroupLayout {}
+
+    public static final String DEFAULT_MORE_FORMAT = "+%d more";
+
+    private final BadgeDrawable[] badges;
+    private final int groupLayout;
+    private final int spacing;
+    private final int lineSpacing;
+    private final boolean collapse;
+    private final BadgeDrawable moreBadge;
+    private final String moreFormat;
+
+    // Per badge layout, relative to the bounds
+    private final int[] widths;
+    private final int[] lefts;
+    private final int[] lines;
+    private int lineHeight;
+    private int visibleCount;
+    private int collapsedCount;
+    private boolean moreVisible;
+    private int intrinsicWidth = -1;
+    private boolean layoutDirty = true;
+    // Set while the badges are re-bound and relabeled, which invalidates them
+    private boolean inLayout;
+
+    public static class Builder {
+        private final List<BadgeDrawable> badges = new ArrayList<>();
+        private int groupLayout = LAYOUT_HORIZONTAL;
+        private int spacing;
+        private int lineSpacing;
+        private boolean collapse = true;
+        private BadgeStyle moreStyle;
+        private String moreFormat = DEFAULT_MORE_FORMAT;
+
+        @NonNull
+        public Builder add(@NonNull BadgeDrawable badge) {
+            badges.add(badge);
+            return this;
+        }
+
+        @NonNull
+        public Builder addAll(@NonNull List<BadgeDrawable> badges) {
+            this.badges.addAll(badges);
+            return this;
+        }
+
+        @NonNull
+        public Builder layout(@GroupLayout int layout) {
+            groupLayout = layout;
+            return this;
+        }
+
+        @NonNull
+        public Builder spacing(int spacing) {
+            this.spacing = spacing;
+            return this;
+        }
+
+        /**
+         * The space between lines of {@link #LAYOUT_WRAP} groups.
+         */
+        @NonNull
+        public Builder lineSpacing(int spacing) {
+            lineSpacing = spacing;
+            return this;
+        }
+
+        /**
+         * Whether badges that don't fit are replaced by a "+N more" badge, true by default.
+         * Otherwise the first badge that doesn't fit is cut to the remaining width.
+         */
+        @NonNull
+        public Builder collapse(boolean collapse) {
+            this.collapse = collapse;
+            return this;
+        }
+
+        @NonNull
+        public Builder moreStyle(@Nullable BadgeStyle style) {
+            moreStyle = style;
+            return this;
+        }
+
+        /**
+         * @param format the text of the collapsed badge, formatted with the number of
+         *               collapsed badges, {@link #DEFAULT_MORE_FORMAT} by default
+         */
+        @NonNull
+        public Builder moreFormat(@NonNull String format) {
+            moreFormat = format;
+            return this;
+        }
+
+        @NonNull
+        public BadgeGroupDrawable build() {
+            return new BadgeGroupDrawable(this);
+        }
+    }
+
+    private BadgeGroupDrawable(Builder builder) {
+        badges = builder.badges.toArray(new BadgeDrawable[builder.badges.size()]);
+        groupLayout = builder.groupLayout;
+        spacing = builder.spacing;
+        lineSpacing = builder.lineSpacing;
+        collapse = builder.collapse;
+        moreFormat = builder.moreFormat;
+
+        final BadgeDrawable.Builder moreBuilder =
+                new BadgeDrawable.Builder().type(BadgeDrawable.TYPE_ONLY_ONE_TEXT);
+        if (builder.moreStyle != null) {
+            moreBuilder.style(builder.moreStyle);
+        }
+        moreBadge = moreBuilder.build();
+
+        widths = new int[badges.length];
+        lefts = new int[badges.length];
+        lines = new int[badges.length];
+
+        for (BadgeDrawable badge : badges) {
+            badge.setCallback(this);
+        }
+    }
+
+    public int getBadgeCount() {
+        return badges.length;
+    }
+
+    @NonNull
+    public BadgeDrawable getBadge(int index) {
+        return badges[index];
+    }
+
+    /**
+     * @return the number of badges shown within the current bounds
+     */
+    public int getVisibleCount() {
+        ensureLaidOut();
+        return visibleCount;
+    }
+
+    /**
+     * @return the number of badges hidden behind the "+N more" badge
+     */
+    public int getCollapsedCount() {
+        ensureLaidOut();
+        return collapsedCount;
+    }
+
+    /**
+     * Measures every badge once and places as many as fit the bounds, line by line.
+     */
+    private void layoutBadges() {
+        layoutDirty = false;
+        final Rect bounds = getBounds();
+        final int maxWidth = bounds.width();
+        final int count = badges.length;
+
+        lineHeight = 0;
+        for (int i = 0; i < count; i++) {
+            widths[i] = badges[i].getNaturalWidth();
+            lineHeight = Math.max(lineHeight, badges[i].getIntrinsicHeight());
+        }
+
+        int maxLines = 1;
+        if (groupLayout == LAYOUT_WRAP) {
+            maxLines = bounds.height() > 0 ?
+                    Math.max(1, (bounds.height() + lineSpacing) / (lineHeight + lineSpacing)) :
+                    Integer.MAX_VALUE;
+        }
+
+        visibleCount = 0;
+        collapsedCount = 0;
+        moreVisible = false;
+
+        int line = 0, lineEnd = 0;
+        boolean lineEmpty = true;
+        for (int i = 0; i < count; i++) {
+            final int width = widths[i];
+            if (maxWidth > 0 && !lineEmpty && lineEnd + spacing + width > maxWidth &&
+                    line + 1 < maxLines) {
+                line++;
+                lineEnd = 0;
+                lineEmpty = true;
+            }
+
+            final int left = lineEmpty ? 0 : lineEnd + spacing;
+            if (maxWidth <= 0 || left + width <= maxWidth) {
+                lefts[i] = left;
+                lines[i] = line;
+                lineEnd = left + width;
+                lineEmpty = false;
+                visibleCount++;
+                continue;
+            }
+
+            if (lineEmpty && line + 1 < maxLines) {
+                // A badge wider than a whole line takes the line and is cut to fit
+                widths[i] = maxWidth;
+                lefts[i] = 0;
+                lines[i] = line;
+                lineEnd = maxWidth;
+                lineEmpty = false;
+                visibleCount++;
+                continue;
+            }
+
+            // The badge doesn't fit the last line
+            if (collapse) {
+                collapseFrom(line, maxWidth);
+            } else if (maxWidth - left > 0) {
+                // Cut the badge to the remaining width, it ellipsizes its texts to fit
+                widths[i] = maxWidth - left;
+                lefts[i] = left;
+                lines[i] = line;
+                visibleCount++;
+            }
+            break;
+        }
+
+        final int lineCount = visibleCount > 0 ? lines[visibleCount - 1] + 1 : 1;
+        final int contentHeight = lineCount * lineHeight + (lineCount - 1) * lineSpacing;
+        final int top = bounds.top + Math.max(0, (bounds.height() - contentHeight) / 2);
+        for (int i = 0; i < visibleCount; i++) {
+            final int badgeLeft = bounds.left + lefts[i];
+            final int badgeTop = top + lines[i] * (lineHeight + lineSpacing);
+            badges[i].setBounds(badgeLeft, badgeTop, badgeLeft + widths[i], badgeTop + lineHeight);
+        }
+
+        if (moreVisible) {
+            final int moreLeft = bounds.left + moreLeft(line);
+            final int moreTop = top + line * (lineHeight + lineSpacing);
+            final int moreWidth = Math.min(moreBadge.getNaturalWidth(), maxWidth);
+            moreBadge.setBounds(moreLeft, moreTop, moreLeft + moreWidth, moreTop + lineHeight);
+        }
+    }
+
+    /**
+     * Appends the "+N more" badge to the line, hiding badges of the line until it fits.
+     */
+    private void collapseFrom(int line, int maxWidth) {
+        while (true) {
+            final int collapsed = badges.length - visibleCount;
+            moreBadge.setText1(String.format(Locale.getDefault(), moreFormat, collapsed));
+
+            final boolean lineEmpty = visibleCount == 0 || lines[visibleCount - 1] != line;
+            if (lineEmpty || moreLeft(line) + moreBadge.getNaturalWidth() <= maxWidth) {
+                // An empty line shows the more badge even if it has to be cut
+                collapsedCount = collapsed;
+                moreVisible = true;
+                return;
+            }
+            visibleCount--;
+        }
+    }
+
+    private int moreLeft(int line) {
+        final int last = visibleCount - 1;
+        return last >= 0 && lines[last] == line ? lefts[last] + widths[last] + spacing : 0;
+    }
+
+    private void ensureLaidOut() {
+        if (layoutDirty) {
+            inLayout = true;
+            try {
+                layoutBadges();
+            } finally {
+                inLayout = false;
+            }
+        }
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        layoutDirty = true;
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        ensureLaidOut();
+
+        for (int i = 0; i < visibleCount; i++) {
+            badges[i].draw(canvas);
+        }
+        if (moreVisible) {
+            moreBadge.draw(canvas);
+        }
+    }
+
+    /**
+     * @return the width of all badges in a single line
+     */
+    @Override
+    public int getIntrinsicWidth() {
+        if (intrinsicWidth < 0) {
+            int width = 0;
+            for (BadgeDrawable badge : badges) {
+                width += badge.getNaturalWidth();
+            }
+            intrinsicWidth = width + Math.max(0, badges.length - 1) * spacing;
+        }
+        return intrinsicWidth;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        int height = 0;
+        for (BadgeDrawable badge : badges) {
+            height = Math.max(height, badge.getIntrinsicHeight());
+        }
+        return height;
+    }
+
+    @Override
+    public void invalidateDrawable(@NonNull Drawable who) {
+        if (inLayout) {
+            // The layout itself moved or relabeled the badge, there is nothing to redo
+            return;
+        }
+
+        // A badge changed, its size too maybe
+        layoutDirty = true;
+        final int oldWidth = intrinsicWidth;
+        intrinsicWidth = -1;
+
+        invalidateSelf();
+        final Callback callback = getCallback();
+        if (callback instanceof View && oldWidth != getIntrinsicWidth()) {
+            ((View) callback).requestLayout();
+        }
+    }
+
+    @Override
+    public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+        scheduleSelf(what, when);
+    }
+
+    @Override
+    public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+        unscheduleSelf(what);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        for (BadgeDrawable badge : badges) {
+            badge.setAlpha(alpha);
+        }
+        moreBadge.setAlpha(alpha);
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        for (BadgeDrawable badge : badges) {
+            badge.setColorFilter(colorFilter);
+        }
+        moreBadge.setColorFilter(colorFilter);
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
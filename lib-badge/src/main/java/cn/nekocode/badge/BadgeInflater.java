@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.XmlResourceParser;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.XmlRes;
+import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+
+/**
+ * Inflates badges from XML resources on all API levels, e.g. res/xml/badge_vip.xml:
+ * <pre>
+ * &lt;badge xmlns:app="http://schemas.android.com/apk/res-auto"
+ *     app:badgeType="onlyOneText"
+ *     app:badgeText1="VIP"
+ *     app:badgeColor="?attr/colorAccent" /&gt;
+ * </pre>
+ * Parsed badges are cached per resource ID, configuration and theme, so that inflating the
+ * same resource again only costs a lookup and a copy of the parsed state. Inflated badges are
+ * mutated, so changing one of them never leaks into the cache or other inflated badges.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public final class BadgeInflater {
+    private static final String TAG_BADGE = "badge";
+
+    private static final class Entry {
+        private final Configuration configuration;
+        private final WeakReference<Resources.Theme> theme;
+        private final Drawable.ConstantState state;
+
+        private Entry(Configuration configuration, Resources.Theme theme,
+                      Drawable.ConstantState state) {
+            this.configuration = configuration;
+            this.theme = new WeakReference<>(theme);
+            this.state = state;
+        }
+
+        private boolean matches(Configuration configuration, Resources.Theme theme) {
+            return this.theme.get() == theme && this.configuration.equals(configuration);
+        }
+    }
+
+    private static final SparseArray<Entry> CACHE = new SparseArray<>();
+
+    private BadgeInflater() {
+    }
+
+    /**
+     * @param resId an XML resource whose root tag is {@code <badge>} or
+     *              {@code <cn.nekocode.badge.BadgeDrawable>}
+     */
+    @NonNull
+    public static BadgeDrawable inflate(@NonNull Context context, @XmlRes int resId) {
+        final Resources res = context.getResources();
+        final Resources.Theme theme = context.getTheme();
+        final Configuration configuration = res.getConfiguration();
+
+        synchronized (CACHE) {
+            final Entry entry = CACHE.get(resId);
+            if (entry != null && entry.matches(configuration, theme)) {
+                return (BadgeDrawable) entry.state.newDrawable(res, theme).mutate();
+            }
+        }
+
+        final BadgeDrawable badge = parse(res, resId, theme);
+        synchronized (CACHE) {
+            CACHE.put(resId, new Entry(new Configuration(configuration), theme,
+                    badge.getConstantState()));
+        }
+
+        // The parsed badge now backs the cache, so hand out a mutated copy like on later hits
+        return (BadgeDrawable) badge.getConstantState().newDrawable(res, theme).mutate();
+    }
+
+    private static BadgeDrawable parse(Resources res, int resId, Resources.Theme theme) {
+        final XmlResourceParser parser = res.getXml(resId);
+        try {
+            int type;
+            while ((type = parser.next()) != XmlPullParser.START_TAG &&
+                    type != XmlPullParser.END_DOCUMENT) {
+                // Skip to the root tag
+            }
+
+            if (type != XmlPullParser.START_TAG) {
+                throw new XmlPullParserException("No start tag found");
+            }
+
+            final String name = parser.getName();
+            if (!TAG_BADGE.equals(name) && !BadgeDrawable.class.getName().equals(name)) {
+                throw new XmlPullParserException(
+                        parser.getPositionDescription() + ": invalid badge tag " + name);
+            }
+
+            final AttributeSet attrs = Xml.asAttributeSet(parser);
+            final BadgeDrawable badge = new BadgeDrawable();
+            badge.inflate(res, parser, attrs, theme);
+            return badge;
+
+        } catch (XmlPullParserException | IOException e) {
+            final Resources.NotFoundException notFound =
+                    new Resources.NotFoundException("Can't inflate badge resource #0x" +
+                            Integer.toHexString(resId));
+            notFound.initCause(e);
+            throw notFound;
+
+        } finally {
+            parser.close();
+        }
+    }
+
+    public static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+}
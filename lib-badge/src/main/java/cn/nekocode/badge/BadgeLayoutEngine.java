@@ -0,0 +1,348 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+/**
+ * Computes the size of a badge and the texts it shows. The engine doesn't depend on any
+ * Android class and keeps no state, so it can run on any thread, e.g. to precompute badge
+ * layouts while diffing list data. Texts are measured through a {@link TextMeasurer},
+ * see {@link PaintTextMeasurer} for the one backed by a real font.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public final class BadgeLayoutEngine {
+    static final String NUMBER_ELLIPSIS = "…";
+
+    public interface TextMeasurer {
+        float measureText(String text);
+
+        /**
+         * @return the number of leading chars of the text that fit the max width
+         */
+        int breakText(String text, float maxWidth);
+    }
+
+    /**
+     * Immutable input of the engine.
+     */
+    public static final class Params {
+        private final int badgeType;
+        private final int number;
+        private final int maxNumber;
+        private final int numberOverflow;
+        private final String text1;
+        private final String text2;
+        private final float textSize;
+        private final float paddingLeft;
+        private final float paddingTop;
+        private final float paddingRight;
+        private final float paddingBottom;
+        private final float paddingCenter;
+
+        private Params(Builder builder) {
+            badgeType = builder.badgeType;
+            number = builder.number;
+            maxNumber = builder.maxNumber;
+            numberOverflow = builder.numberOverflow;
+            text1 = builder.text1 != null ? builder.text1 : "";
+            text2 = builder.text2 != null ? builder.text2 : "";
+            textSize = builder.textSize;
+            paddingLeft = builder.paddingLeft;
+            paddingTop = builder.paddingTop;
+            paddingRight = builder.paddingRight;
+            paddingBottom = builder.paddingBottom;
+            paddingCenter = builder.paddingCenter;
+        }
+
+        public static class Builder {
+            private int badgeType = BadgeDrawable.TYPE_NUMBER;
+            private int number;
+            private int maxNumber = BadgeDrawable.DEFAULT_MAX_NUMBER;
+            private int numberOverflow = BadgeDrawable.NUMBER_OVERFLOW_ELLIPSIS;
+            private String text1;
+            private String text2;
+            private float textSize;
+            private float paddingLeft;
+            private float paddingTop;
+            private float paddingRight;
+            private float paddingBottom;
+            private float paddingCenter;
+
+            public Builder type(int type) {
+                badgeType = type;
+                return this;
+            }
+
+            public Builder number(int number) {
+                this.number = number;
+                return this;
+            }
+
+            public Builder maxNumber(int maxNumber) {
+                this.maxNumber = maxNumber;
+                return this;
+            }
+
+            public Builder numberOverflow(int overflow) {
+                numberOverflow = overflow;
+                return this;
+            }
+
+            public Builder text1(String text1) {
+                this.text1 = text1;
+                return this;
+            }
+
+            public Builder text2(String text2) {
+                this.text2 = text2;
+                return this;
+            }
+
+            public Builder textSize(float size) {
+                textSize = size;
+                return this;
+            }
+
+            public Builder padding(float l, float t, float r, float b, float c) {
+                paddingLeft = l;
+                paddingTop = t;
+                paddingRight = r;
+                paddingBottom = b;
+                paddingCenter = c;
+                return this;
+            }
+
+            public Params build() {
+                return new Params(this);
+            }
+        }
+    }
+
+    /**
+     * Output of the engine. The sizes and texts never change, but the number text of
+     * {@link BadgeDrawable#TYPE_NUMBER} badges is only formatted on the first
+     * {@link #getText1()} call. Concurrent first calls may each format it, which is harmless
+     * as they produce equal strings.
+     */
+    public static final class Result {
+        private final int badgeWidth;
+        private final int badgeHeight;
+        private final int naturalWidth;
+        private final int text1Width;
+        private final int text2Width;
+        private String text1;
+        private final String text2;
+        private final char[] numberChars;
+        private final int numberLength;
+
+        private Result(int badgeWidth, int badgeHeight, int naturalWidth,
+                       int text1Width, int text2Width, String text1, String text2) {
+            this(badgeWidth, badgeHeight, naturalWidth, text1Width, text2Width,
+                    text1, text2, null, 0);
+        }
+
+        private Result(int badgeWidth, int badgeHeight, int naturalWidth,
+                       int text1Width, int text2Width, String text1, String text2,
+                       char[] numberChars, int numberLength) {
+            this.badgeWidth = badgeWidth;
+            this.badgeHeight = badgeHeight;
+            this.naturalWidth = naturalWidth;
+            this.text1Width = text1Width;
+            this.text2Width = text2Width;
+            this.text1 = text1;
+            this.text2 = text2;
+            this.numberChars = numberChars;
+            this.numberLength = numberLength;
+        }
+
+        public int getBadgeWidth() {
+            return badgeWidth;
+        }
+
+        public int getBadgeHeight() {
+            return badgeHeight;
+        }
+
+        /**
+         * @return the width of the badge when it isn't limited by bounds
+         */
+        public int getNaturalWidth() {
+            return naturalWidth;
+        }
+
+        public int getText1Width() {
+            return text1Width;
+        }
+
+        public int getText2Width() {
+            return text2Width;
+        }
+
+        /**
+         * @return the text shown in the first segment, already cut to fit. For
+         * {@link BadgeDrawable#TYPE_NUMBER} badges this is the number text.
+         */
+        public String getText1() {
+            if (text1 == null) {
+                // Number texts are only turned into strings when asked for
+                text1 = NumberFormatter.toString(numberChars, numberLength);
+            }
+            return text1;
+        }
+
+        /**
+         * @return the text shown in the second segment, already cut to fit
+         */
+        public String getText2() {
+            return text2;
+        }
+
+        /**
+         * The formatted number of {@link BadgeDrawable#TYPE_NUMBER} badges, or null.
+         */
+        char[] getNumberChars() {
+            return numberChars;
+        }
+
+        int getNumberLength() {
+            return numberLength;
+        }
+    }
+
+    private BadgeLayoutEngine() {
+    }
+
+    /**
+     * @param boundsWidth the width the badge has to fit, or 0 if it isn't limited
+     */
+    public static Result layout(Params params, TextMeasurer measurer, int boundsWidth) {
+        return layout(params, measurer,
+                isNumber(params.badgeType) ? new NumberGlyphs(measurer) : null, boundsWidth);
+    }
+
+    /**
+     * @param glyphs the glyph widths of the measurer's font, required for number badges
+     */
+    static Result layout(Params params, TextMeasurer measurer, NumberGlyphs glyphs,
+                         int boundsWidth) {
+        return layout(params, measurer, glyphs, boundsWidth, null);
+    }
+
+    /**
+     * @param truncateIterations if not null, its first element is increased by the number
+     *                           of attempts to fit cut texts
+     */
+    static Result layout(Params params, TextMeasurer measurer, NumberGlyphs glyphs,
+                         int boundsWidth, int[] truncateIterations) {
+        if (isNumber(params.badgeType)) {
+            return layoutNumber(params, glyphs);
+        }
+
+        final int badgeHeight = (int) (params.textSize + params.paddingTop + params.paddingBottom);
+        int badgeWidth;
+        int text1Width = 0, text2Width = 0;
+
+        switch (params.badgeType) {
+            case BadgeDrawable.TYPE_ONLY_ONE_TEXT:
+                text1Width = (int) measurer.measureText(params.text1);
+                badgeWidth = (int) (text1Width + params.paddingLeft + params.paddingRight);
+                break;
+
+            case BadgeDrawable.TYPE_WITH_TWO_TEXT:
+            case BadgeDrawable.TYPE_WITH_TWO_TEXT_COMPLEMENTARY:
+            default:
+                text1Width = (int) measurer.measureText(params.text1);
+                text2Width = (int) measurer.measureText(params.text2);
+                badgeWidth = (int) (text1Width + text2Width +
+                        params.paddingLeft + params.paddingRight + params.paddingCenter);
+        }
+        final int naturalWidth = badgeWidth;
+
+        if (boundsWidth > 0 && boundsWidth < badgeWidth) {
+            // If the bounds has been set, adjust the badge size
+            switch (params.badgeType) {
+                case BadgeDrawable.TYPE_ONLY_ONE_TEXT:
+                    text1Width = (int) (boundsWidth - params.paddingLeft - params.paddingRight);
+                    text1Width = text1Width > 0 ? text1Width : 0;
+
+                    badgeWidth = boundsWidth;
+                    break;
+
+                case BadgeDrawable.TYPE_WITH_TWO_TEXT:
+                case BadgeDrawable.TYPE_WITH_TWO_TEXT_COMPLEMENTARY:
+                default:
+                    if (boundsWidth < (text1Width + params.paddingLeft + params.paddingRight)) {
+                        text1Width = (int) (boundsWidth - params.paddingLeft - params.paddingRight);
+                        text1Width = text1Width > 0 ? text1Width : 0;
+                        text2Width = 0;
+
+                    } else {
+                        text2Width = (int) (boundsWidth - text1Width -
+                                params.paddingLeft - params.paddingRight - params.paddingCenter);
+                        text2Width = text2Width > 0 ? text2Width : 0;
+                    }
+
+                    badgeWidth = boundsWidth;
+            }
+        }
+
+        final String text1, text2;
+        switch (params.badgeType) {
+            case BadgeDrawable.TYPE_ONLY_ONE_TEXT:
+                text1 = TextTruncator.ellipsize(
+                        measurer, params.text1, text1Width, truncateIterations);
+                text2 = "";
+                break;
+
+            case BadgeDrawable.TYPE_WITH_TWO_TEXT:
+            case BadgeDrawable.TYPE_WITH_TWO_TEXT_COMPLEMENTARY:
+            default:
+                text1 = TextTruncator.ellipsize(
+                        measurer, params.text1, text1Width, truncateIterations);
+                text2 = TextTruncator.ellipsize(
+                        measurer, params.text2, text2Width, truncateIterations);
+        }
+
+        return new Result(badgeWidth, badgeHeight, naturalWidth, text1Width, text2Width, text1, text2);
+    }
+
+    /**
+     * Unknown types are laid out as numbers, as they always were.
+     */
+    private static boolean isNumber(int badgeType) {
+        return badgeType != BadgeDrawable.TYPE_ONLY_ONE_TEXT &&
+                badgeType != BadgeDrawable.TYPE_WITH_TWO_TEXT &&
+                badgeType != BadgeDrawable.TYPE_WITH_TWO_TEXT_COMPLEMENTARY;
+    }
+
+    /**
+     * Number badges are at least as wide as they are high, and grow with the digits of the
+     * formatted number. They ignore the bounds width, numbers beyond the max number are
+     * shortened by the overflow format instead.
+     */
+    private static Result layoutNumber(Params params, NumberGlyphs glyphs) {
+        final char[] chars = new char[NumberFormatter.MAX_LENGTH];
+        final int length = NumberFormatter.format(
+                params.number, params.maxNumber, params.numberOverflow, chars);
+        final float textWidth = Math.max(params.textSize, glyphs.measure(chars, length));
+
+        final int badgeHeight = (int) (params.textSize + params.paddingTop + params.paddingBottom);
+        final int badgeWidth = (int) (textWidth + params.paddingLeft + params.paddingRight);
+        return new Result(badgeWidth, badgeHeight, badgeWidth, (int) textWidth, 0,
+                null, "", chars, length);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small size-bounded LRU cache. The framework's {@code LruCache} requires API 12 while
+ * this library still supports API 11, so we keep our own minimal version of it.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+class BadgeLruCache<K, V> {
+    private final LinkedHashMap<K, V> map = new LinkedHashMap<>(0, 0.75f, true);
+    private long maxSize;
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private long putCount;
+    private long evictionCount;
+
+    BadgeLruCache(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+    }
+
+    synchronized V get(K key) {
+        final V value = map.get(key);
+        if (value != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return value;
+    }
+
+    synchronized V put(K key, V value) {
+        putCount++;
+        size += sizeOf(key, value);
+        final V previous = map.put(key, value);
+        if (previous != null) {
+            size -= sizeOf(key, previous);
+        }
+        trimToSize(maxSize);
+        return previous;
+    }
+
+    synchronized V remove(K key) {
+        final V previous = map.remove(key);
+        if (previous != null) {
+            size -= sizeOf(key, previous);
+        }
+        return previous;
+    }
+
+    synchronized void trimToSize(long maxSize) {
+        final Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            final Map.Entry<K, V> eldest = iterator.next();
+            iterator.remove();
+            size -= sizeOf(eldest.getKey(), eldest.getValue());
+            evictionCount++;
+            entryEvicted(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    synchronized void resize(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    synchronized void evictAll() {
+        trimToSize(-1);
+    }
+
+    /**
+     * Returns the size of the entry in user-defined units. The default implementation
+     * returns 1 so that size is the number of entries and max size is the maximum number
+     * of entries.
+     */
+    long sizeOf(K key, V value) {
+        return 1;
+    }
+
+    /**
+     * Called with the cache's lock held for entries that have been evicted to make space.
+     */
+    void entryEvicted(K key, V value) {
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    synchronized long maxSize() {
+        return maxSize;
+    }
+
+    synchronized long hitCount() {
+        return hitCount;
+    }
+
+    synchronized long missCount() {
+        return missCount;
+    }
+
+    synchronized long putCount() {
+        return putCount;
+    }
+
+    synchronized long evictionCount() {
+        return evictionCount;
+    }
+
+    synchronized int entryCount() {
+        return map.size();
+    }
+}
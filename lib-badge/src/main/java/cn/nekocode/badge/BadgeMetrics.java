@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Receives timings and counts of the badge hot paths. Install one for all badges with
+ * {@link #setGlobal(BadgeMetrics)}, or for a single badge with
+ * {@link BadgeDrawable#setMetrics(BadgeMetrics)}. Without any installed, badges skip
+ * the instrumentation, a single null check per measure and draw.
+ * <p>
+ * Callbacks run on the thread doing the work, which is not always the UI thread, e.g.
+ * for badges prefetched by {@link BadgePrefetcher}. Override only what is needed.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public abstract class BadgeMetrics {
+    public static final int CACHE_BITMAP = 1;
+    public static final int CACHE_PICTURE = 1 << 1;
+    public static final int CACHE_ATLAS = 1 << 2;
+    public static final int CACHE_ALPHA_MASK = 1 << 3;
+    @IntDef({CACHE_BITMAP, CACHE_PICTURE, CACHE_ATLAS, CACHE_ALPHA_MASK})
+    public @interface Cache {}
+
+    private static volatile BadgeMetrics global;
+    private static volatile boolean debugOverlay;
+
+    /**
+     * Installs metrics for all badges that don't have their own, or null to remove them.
+     */
+    public static void setGlobal(@Nullable BadgeMetrics metrics) {
+        global = metrics;
+    }
+
+    @Nullable
+    public static BadgeMetrics getGlobal() {
+        return global;
+    }
+
+    /**
+     * Paints how many times each badge was drawn over it, to spot badges that redraw too
+     * often. For debugging only, the overlay allocates while drawing.
+     */
+    public static void setDebugOverlay(boolean enabled) {
+        debugOverlay = enabled;
+    }
+
+    public static boolean isDebugOverlayEnabled() {
+        return debugOverlay;
+    }
+
+    /**
+     * The badge computed its size and texts.
+     */
+    public void onMeasure(@NonNull BadgeDrawable badge, long durationNanos) {
+    }
+
+    /**
+     * The badge was drawn, in any render mode.
+     */
+    public void onDraw(@NonNull BadgeDrawable badge, long durationNanos) {
+    }
+
+    /**
+     * The badge cut its texts to fit its bounds while measuring.
+     *
+     * @param iterations the number of fitting attempts, one per tried "..." suffix
+     */
+    public void onTruncate(@NonNull BadgeDrawable badge, int iterations) {
+    }
+
+    /**
+     * The badge looked up a cached rendering of itself.
+     */
+    public void onCacheLookup(@NonNull BadgeDrawable badge, @Cache int cache, boolean hit) {
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Aggregates badge metrics into histograms, to be exported to telemetry. Durations go
+ * into power-of-two buckets: bucket i counts durations in [2^i, 2^(i+1)) nanoseconds.
+ * All methods are thread-safe.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public class BadgeMetricsHistogram extends BadgeMetrics {
+    public static final int BUCKET_COUNT = 32;
+
+    // One counter slot per cache, see cacheIndex()
+    private static final int CACHE_COUNT = 4;
+
+    private final AtomicLongArray measureBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLongArray drawBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong measureNanos = new AtomicLong();
+    private final AtomicLong drawNanos = new AtomicLong();
+    private final AtomicLong truncateCount = new AtomicLong();
+    private final AtomicLong truncateIterations = new AtomicLong();
+    private final AtomicLongArray cacheHits = new AtomicLongArray(CACHE_COUNT);
+    private final AtomicLongArray cacheMisses = new AtomicLongArray(CACHE_COUNT);
+
+    @Override
+    public void onMeasure(@NonNull BadgeDrawable badge, long durationNanos) {
+        measureBuckets.incrementAndGet(bucketOf(durationNanos));
+        measureNanos.addAndGet(durationNanos);
+    }
+
+    @Override
+    public void onDraw(@NonNull BadgeDrawable badge, long durationNanos) {
+        drawBuckets.incrementAndGet(bucketOf(durationNanos));
+        drawNanos.addAndGet(durationNanos);
+    }
+
+    @Override
+    public void onTruncate(@NonNull BadgeDrawable badge, int iterations) {
+        truncateCount.incrementAndGet();
+        truncateIterations.addAndGet(iterations);
+    }
+
+    @Override
+    public void onCacheLookup(@NonNull BadgeDrawable badge, @Cache int cache, boolean hit) {
+        (hit ? cacheHits : cacheMisses).incrementAndGet(cacheIndex(cache));
+    }
+
+    private static int bucketOf(long nanos) {
+        final int bucket = 63 - Long.numberOfLeadingZeros(Math.max(1, nanos));
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    private static int cacheIndex(@Cache int cache) {
+        switch (cache) {
+            case CACHE_BITMAP:
+                return 0;
+            case CACHE_PICTURE:
+                return 1;
+            case CACHE_ATLAS:
+                return 2;
+            case CACHE_ALPHA_MASK:
+                return 3;
+            default:
+                throw new IllegalArgumentException("Unknown cache: " + cache);
+        }
+    }
+
+    /**
+     * @return the smallest duration counted by the bucket
+     */
+    public static long getBucketLowerBoundNanos(int bucket) {
+        return 1L << bucket;
+    }
+
+    /**
+     * @return a snapshot of the measure duration buckets
+     */
+    @NonNull
+    public long[] getMeasureHistogram() {
+        return snapshot(measureBuckets);
+    }
+
+    /**
+     * @return a snapshot of the draw duration buckets
+     */
+    @NonNull
+    public long[] getDrawHistogram() {
+        return snapshot(drawBuckets);
+    }
+
+    private static long[] snapshot(AtomicLongArray buckets) {
+        final long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    public long getMeasureNanos() {
+        return measureNanos.get();
+    }
+
+    public long getDrawNanos() {
+        return drawNanos.get();
+    }
+
+    public long getTruncateCount() {
+        return truncateCount.get();
+    }
+
+    public long getTruncateIterations() {
+        return truncateIterations.get();
+    }
+
+    public long getCacheHitCount(@Cache int cache) {
+        return cacheHits.get(cacheIndex(cache));
+    }
+
+    public long getCacheMissCount(@Cache int cache) {
+        return cacheMisses.get(cacheIndex(cache));
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            measureBuckets.set(i, 0);
+            drawBuckets.set(i, 0);
+        }
+        measureNanos.set(0);
+        drawNanos.set(0);
+        truncateCount.set(0);
+        truncateIterations.set(0);
+        for (int i = 0; i < CACHE_COUNT; i++) {
+            cacheHits.set(i, 0);
+            cacheMisses.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Leases and recycles {@link BadgeDrawable}s, e.g. for badges of recycled list items.
+ * Released badges are reconfigured in place on the next {@link #acquire}, instead of
+ * allocating a new drawable with its paint and paths.
+ * <p>
+ * Badges that are garbage collected without being released are reported as leaks.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public class BadgePool {
+    private static final String TAG = "BadgePool";
+
+    static final class Lease extends WeakReference<BadgeDrawable> {
+        private final BadgePool pool;
+
+        private Lease(BadgeDrawable badge, BadgePool pool, ReferenceQueue<BadgeDrawable> queue) {
+            super(badge, queue);
+            this.pool = pool;
+        }
+    }
+
+    private final int maxSize;
+    private final ArrayDeque<BadgeDrawable> pool = new ArrayDeque<>();
+    private final Set<Lease> leases = new HashSet<>();
+    private final ReferenceQueue<BadgeDrawable> leakQueue = new ReferenceQueue<>();
+    private long createdCount;
+    private long reusedCount;
+    private long leakedCount;
+
+    /**
+     * @param maxSize the max number of released badges kept for reuse
+     */
+    public BadgePool(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+    }
+
+    @NonNull
+    public synchronized BadgeDrawable acquire(@NonNull BadgeDrawable.Builder builder) {
+        detectLeaks();
+
+        BadgeDrawable badge = pool.poll();
+        if (badge != null) {
+            badge.reconfigure(builder);
+            reusedCount++;
+        } else {
+            badge = builder.build();
+            createdCount++;
+        }
+
+        final Lease lease = new Lease(badge, this, leakQueue);
+        leases.add(lease);
+        badge.poolLease = lease;
+        return badge;
+    }
+
+    public synchronized void release(@NonNull BadgeDrawable badge) {
+        detectLeaks();
+
+        final Lease lease = badge.poolLease;
+        if (lease == null || lease.pool != this || !leases.remove(lease)) {
+            throw new IllegalArgumentException("The badge wasn't acquired from this pool");
+        }
+        lease.clear();
+        badge.poolLease = null;
+
+        // Detach the badge from its host, so that recycling doesn't touch the old view
+        badge.endNumberTransition();
+        badge.setCallback(null);
+        badge.setBounds(0, 0, 0, 0);
+        badge.setAlpha(255);
+        badge.setColorFilter(null);
+        badge.setMetrics(null);
+        badge.setNumberAnimationDuration(BadgeDrawable.DEFAULT_NUMBER_ANIMATION_DURATION);
+
+        if (pool.size() < maxSize) {
+            pool.add(badge);
+        }
+    }
+
+    private void detectLeaks() {
+        Lease lease;
+        while ((lease = (Lease) leakQueue.poll()) != null) {
+            if (leases.remove(lease)) {
+                leakedCount++;
+                Log.w(TAG, "A badge was garbage collected without being released");
+            }
+        }
+    }
+
+    public synchronized int getPooledCount() {
+        return pool.size();
+    }
+
+    public synchronized int getLeasedCount() {
+        detectLeaks();
+        return leases.size();
+    }
+
+    /**
+     * @return how many badges were allocated because the pool was empty
+     */
+    public synchronized long getCreatedCount() {
+        return createdCount;
+    }
+
+    /**
+     * @return how many badges were reconfigured in place instead of allocated
+     */
+    public synchronized long getReusedCount() {
+        return reusedCount;
+    }
+
+    public synchronized long getLeakedCount() {
+        detectLeaks();
+        return leakedCount;
+    }
+
+    public synchronized void clear() {
+        pool.clear();
+    }
+}
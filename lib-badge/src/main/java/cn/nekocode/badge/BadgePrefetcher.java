@@ -0,0 +1,244 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds, measures and optionally rasterizes badges of upcoming list items on worker
+ * threads, and hands the ready-to-draw badges back on the main thread.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public class BadgePrefetcher {
+
+    public interface Callback {
+        /**
+         * Called on the main thread, with the badges in the order of the builders.
+         */
+        void onBadgesReady(@NonNull List<BadgeDrawable> badges);
+
+        /**
+         * Called on the main thread instead of {@link #onBadgesReady(List)} when the
+         * executor rejected the request. Not called for requests cancelled through
+         * {@link Request#cancel()} or {@link #shutdown()}.
+         */
+        void onBadgesCancelled();
+    }
+
+    public final class Request {
+        private final List<BadgeDrawable.Builder> builders;
+        private final boolean rasterize;
+        private final Callback callback;
+        private volatile boolean cancelled;
+
+        private Request(List<BadgeDrawable.Builder> builders, boolean rasterize, Callback callback) {
+            this.builders = builders;
+            this.rasterize = rasterize;
+            this.callback = callback;
+        }
+
+        /**
+         * Stops the work if it hasn't finished yet. The callback won't be called afterwards.
+         */
+        public void cancel() {
+            cancelled = true;
+            synchronized (pending) {
+                pending.remove(this);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void run() {
+            final List<BadgeDrawable> badges = new ArrayList<>(builders.size());
+            for (BadgeDrawable.Builder builder : builders) {
+                if (cancelled || shutdown) {
+                    return;
+                }
+
+                final BadgeDrawable badge = builder.build();
+                badge.prewarm(rasterize);
+                badges.add(badge);
+            }
+
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    // Requests still running on a shared executor finish after shutdown()
+                    if (!cancelled && !shutdown) {
+                        callback.onBadgesReady(Collections.unmodifiableList(badges));
+                    }
+                }
+            });
+        }
+    }
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final Executor executor;
+    private final ExecutorService ownExecutor;
+    private final int maxConcurrency;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ArrayDeque<Request> pending = new ArrayDeque<>();
+    private int running;
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a prefetcher with its own low priority worker threads.
+     */
+    public BadgePrefetcher(int maxConcurrency) {
+        this(createExecutor(maxConcurrency), maxConcurrency, true);
+    }
+
+    /**
+     * @param maxConcurrency the max number of requests running on the executor at once
+     */
+    public BadgePrefetcher(@NonNull Executor executor, int maxConcurrency) {
+        this(executor, maxConcurrency, false);
+    }
+
+    private BadgePrefetcher(Executor executor, int maxConcurrency, boolean ownsExecutor) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency <= 0");
+        }
+        this.executor = executor;
+        this.ownExecutor = ownsExecutor ? (ExecutorService) executor : null;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    private static ExecutorService createExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull final Runnable r) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Never compete with the UI thread
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }
+                }, "BadgePrefetcher-" + THREAD_COUNT.incrementAndGet());
+            }
+        });
+    }
+
+    /**
+     * Prefetches badges of the builders. The builders must not be modified until the
+     * callback is called. After {@link #shutdown()}, the returned request is already
+     * cancelled. If the executor rejects the request, it is cancelled and reported through
+     * {@link Callback#onBadgesCancelled()}.
+     *
+     * @param rasterize whether to also rasterize badges in
+     *                  {@link BadgeDrawable#RENDER_MODE_BITMAP_CACHE} into the bitmap cache
+     */
+    @NonNull
+    public Request prefetch(@NonNull List<BadgeDrawable.Builder> builders, boolean rasterize,
+                            @NonNull Callback callback) {
+        final Request request =
+                new Request(new ArrayList<>(builders), rasterize, callback);
+
+        synchronized (pending) {
+            if (shutdown) {
+                request.cancelled = true;
+                return request;
+            }
+            pending.add(request);
+        }
+        scheduleNext();
+        return request;
+    }
+
+    private void scheduleNext() {
+        final Request request;
+        synchronized (pending) {
+            if (running >= maxConcurrency || pending.isEmpty()) {
+                return;
+            }
+            request = pending.poll();
+            running++;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        request.run();
+                    } finally {
+                        synchronized (pending) {
+                            running--;
+                        }
+                        scheduleNext();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // This may run on a worker thread, after its request finished, where nobody
+            // could catch the exception. The request's callback hears about it instead.
+            synchronized (pending) {
+                running--;
+            }
+            request.cancelled = true;
+            if (!shutdown) {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!shutdown) {
+                            request.callback.onBadgesCancelled();
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Cancels all the pending requests, and stops the worker threads if the prefetcher
+     * created them. Requests that are already running stop at the next badge, and no
+     * callback is called afterwards.
+     */
+    public void shutdown() {
+        synchronized (pending) {
+            shutdown = true;
+            for (Request request : pending) {
+                request.cancelled = true;
+            }
+            pending.clear();
+        }
+
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+}
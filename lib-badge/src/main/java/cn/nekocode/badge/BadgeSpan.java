@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.style.ReplacementSpan;
+
+/**
+ * Draws a badge inline in a text, straight onto the canvas of the TextView. The size
+ * comes from the badge's cached measurement.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public class BadgeSpan extends ReplacementSpan {
+    public static final int ALIGN_BOTTOM = 0;
+    public static final int ALIGN_BASELINE = 1;
+    @IntDef({ALIGN_BOTTOM, ALIGN_BASELINE})
+    public @interface Alignment {}
+
+    private final BadgeDrawable badge;
+    private final int alignment;
+
+    /**
+     * Creates a span aligned to the bottom of the line, like {@link BadgeDrawable#toSpannable()}.
+     */
+    public BadgeSpan(@NonNull BadgeDrawable badge) {
+        this(badge, ALIGN_BOTTOM);
+    }
+
+    public BadgeSpan(@NonNull BadgeDrawable badge, @Alignment int alignment) {
+        this.badge = badge;
+        this.alignment = alignment;
+    }
+
+    @NonNull
+    public BadgeDrawable getBadge() {
+        return badge;
+    }
+
+    @Override
+    public int getSize(@NonNull Paint paint, CharSequence text, int start, int end,
+                       @Nullable Paint.FontMetricsInt fm) {
+        final int width = badge.getIntrinsicWidth();
+        final int height = badge.getIntrinsicHeight();
+
+        // Same as ImageSpan, the badge sits on the baseline
+        if (fm != null) {
+            fm.ascent = -height;
+            fm.descent = 0;
+            fm.top = fm.ascent;
+            fm.bottom = 0;
+        }
+
+        return width;
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas, CharSequence text, int start, int end,
+                     float x, int top, int y, int bottom, @NonNull Paint paint) {
+        final int width = badge.getIntrinsicWidth();
+        final int height = badge.getIntrinsicHeight();
+
+        // Unchanged bounds are a no-op, and bounds wide enough for the badge don't re-measure it
+        badge.setBounds(0, 0, width, height);
+
+        final float transY = (alignment == ALIGN_BASELINE ? y : bottom) - height;
+
+        final int saveCount = canvas.save();
+        canvas.translate(x, transY);
+        badge.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+}
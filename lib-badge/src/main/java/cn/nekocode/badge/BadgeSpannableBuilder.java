@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+
+/**
+ * Appends texts and badges into a single {@link SpannableStringBuilder} in one pass,
+ * instead of concatenating a spannable per badge.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public class BadgeSpannableBuilder {
+    private final SpannableStringBuilder builder;
+
+    public BadgeSpannableBuilder() {
+        builder = new SpannableStringBuilder();
+    }
+
+    public BadgeSpannableBuilder(@NonNull SpannableStringBuilder builder) {
+        this.builder = builder;
+    }
+
+    @NonNull
+    public BadgeSpannableBuilder append(@Nullable CharSequence text) {
+        if (text != null) {
+            builder.append(text);
+        }
+        return this;
+    }
+
+    /**
+     * Appends a badge aligned to the bottom of the line, like {@link BadgeDrawable#toSpannable()}.
+     */
+    @NonNull
+    public BadgeSpannableBuilder append(@NonNull BadgeDrawable badge) {
+        return append(badge, BadgeSpan.ALIGN_BOTTOM);
+    }
+
+    @NonNull
+    public BadgeSpannableBuilder append(@NonNull BadgeDrawable badge, @BadgeSpan.Alignment int alignment) {
+        final int start = builder.length();
+        builder.append(' ');
+        builder.setSpan(new BadgeSpan(badge, alignment), start, start + 1,
+                Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        return this;
+    }
+
+    @NonNull
+    public SpannableStringBuilder build() {
+        return builder;
+    }
+}
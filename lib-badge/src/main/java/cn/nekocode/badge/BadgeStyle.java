@@ -0,0 +1,450 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.content.res.Resources;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.DisplayMetrics;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * The immutable look of a badge: colors, typeface, text size, paddings, corner radius and
+ * stroke width, all in pixels. Styles are interned, so equal styles are the same instance
+ * and share one pre-configured paint, its font metrics and the corner radii.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public final class BadgeStyle {
+    private static final WeakHashMap<BadgeStyle, WeakReference<BadgeStyle>> INTERNED =
+            new WeakHashMap<>();
+    private static BadgeStyle defaultStyle;
+    private static float defaultDensity, defaultScaledDensity;
+
+    private final int badgeColor;
+    private final int textColor;
+    private final Typeface typeface;
+    private final float textSize;
+    private final float cornerRadius;
+    private final float paddingLeft;
+    private final float paddingTop;
+    private final float paddingRight;
+    private final float paddingBottom;
+    private final float paddingCenter;
+    private final int strokeWidth;
+    private final int shapeHash;
+    private final int hash;
+
+    // Shared render objects, created the first time an interned style is drawn
+    private volatile BadgeFont font;
+    private float[] outerR;
+    private float[] outerROfText1;
+    private float[] outerROfText2;
+    private volatile float[] numberR;
+
+    public static class Builder {
+        private int badgeColor = 0xffCC3333;
+        private int textColor = 0xffFFFFFF;
+        private Typeface typeface = Typeface.DEFAULT_BOLD;
+        private String typefaceAsset;
+        private float textSize;
+        private float cornerRadius;
+        private float paddingLeft;
+        private float paddingTop;
+        private float paddingRight;
+        private float paddingBottom;
+        private float paddingCenter;
+        private int strokeWidth;
+
+        public Builder() {
+            // Look up the display metrics once instead of once per default dimension
+            final DisplayMetrics metrics = Resources.getSystem().getDisplayMetrics();
+            textSize = spToPixels(metrics, 12);
+            cornerRadius = dipToPixels(metrics, 2);
+            paddingLeft = dipToPixels(metrics, 2);
+            paddingTop = dipToPixels(metrics, 2);
+            paddingRight = dipToPixels(metrics, 2);
+            paddingBottom = dipToPixels(metrics, 2);
+            paddingCenter = dipToPixels(metrics, 3);
+            strokeWidth = (int) dipToPixels(metrics, 1);
+        }
+
+        private Builder(BadgeStyle style) {
+            badgeColor = style.badgeColor;
+            textColor = style.textColor;
+            typeface = style.typeface;
+            textSize = style.textSize;
+            cornerRadius = style.cornerRadius;
+            paddingLeft = style.paddingLeft;
+            paddingTop = style.paddingTop;
+            paddingRight = style.paddingRight;
+            paddingBottom = style.paddingBottom;
+            paddingCenter = style.paddingCenter;
+            strokeWidth = style.strokeWidth;
+        }
+
+        @NonNull
+        public Builder badgeColor(int color) {
+            badgeColor = color;
+            return this;
+        }
+
+        @NonNull
+        public Builder textColor(int color) {
+            textColor = color;
+            return this;
+        }
+
+        @NonNull
+        public Builder typeFace(@Nullable Typeface typeface) {
+            this.typeface = typeface;
+            typefaceAsset = null;
+            return this;
+        }
+
+        /**
+         * Uses a font of the app's assets, loaded once through {@link BadgeTypefaces} when
+         * the style is built. Requires {@link BadgeTypefaces#init}.
+         */
+        @NonNull
+        public Builder typeFaceAsset(@NonNull String path) {
+            typefaceAsset = path;
+            return this;
+        }
+
+        @NonNull
+        public Builder textSize(float size) {
+            textSize = size;
+            return this;
+        }
+
+        @NonNull
+        public Builder cornerRadius(float radius) {
+            cornerRadius = radius;
+            return this;
+        }
+
+        @NonNull
+        public Builder padding(float l, float t, float r, float b, float c) {
+            paddingLeft = l;
+            paddingTop = t;
+            paddingRight = r;
+            paddingBottom = b;
+            paddingCenter = c;
+            return this;
+        }
+
+        @NonNull
+        public Builder paddingLeft(float l) {
+            paddingLeft = l;
+            return this;
+        }
+
+        @NonNull
+        public Builder paddingTop(float t) {
+            paddingTop = t;
+            return this;
+        }
+
+        @NonNull
+        public Builder paddingRight(float r) {
+            paddingRight = r;
+            return this;
+        }
+
+        @NonNull
+        public Builder paddingBottom(float b) {
+            paddingBottom = b;
+            return this;
+        }
+
+        @NonNull
+        public Builder paddingCenter(float c) {
+            paddingCenter = c;
+            return this;
+        }
+
+        @NonNull
+        public Builder strokeWidth(int width) {
+            strokeWidth = width;
+            return this;
+        }
+
+        /**
+         * @return the interned style, equal builders always return the same instance
+         */
+        @NonNull
+        public BadgeStyle build() {
+            if (typefaceAsset != null) {
+                typeface = BadgeTypefaces.fromAsset(typefaceAsset);
+                typefaceAsset = null;
+            }
+            return intern(new BadgeStyle(this));
+        }
+    }
+
+    private BadgeStyle(Builder builder) {
+        badgeColor = builder.badgeColor;
+        textColor = builder.textColor;
+        typeface = builder.typeface;
+        textSize = builder.textSize;
+        cornerRadius = builder.cornerRadius;
+        paddingLeft = builder.paddingLeft;
+        paddingTop = builder.paddingTop;
+        paddingRight = builder.paddingRight;
+        paddingBottom = builder.paddingBottom;
+        paddingCenter = builder.paddingCenter;
+        strokeWidth = builder.strokeWidth;
+
+        int result = typeface != null ? typeface.hashCode() : 0;
+        result = 31 * result + Float.floatToIntBits(textSize);
+        result = 31 * result + Float.floatToIntBits(cornerRadius);
+        result = 31 * result + Float.floatToIntBits(paddingLeft);
+        result = 31 * result + Float.floatToIntBits(paddingTop);
+        result = 31 * result + Float.floatToIntBits(paddingRight);
+        result = 31 * result + Float.floatToIntBits(paddingBottom);
+        result = 31 * result + Float.floatToIntBits(paddingCenter);
+        result = 31 * result + strokeWidth;
+        shapeHash = result;
+
+        result = 31 * result + badgeColor;
+        result = 31 * result + textColor;
+        hash = result;
+    }
+
+    private static BadgeStyle intern(BadgeStyle style) {
+        synchronized (INTERNED) {
+            final WeakReference<BadgeStyle> ref = INTERNED.get(style);
+            final BadgeStyle interned = ref != null ? ref.get() : null;
+            if (interned != null) {
+                return interned;
+            }
+
+            INTERNED.put(style, new WeakReference<>(style));
+            return style;
+        }
+    }
+
+    /**
+     * @return the style of badges that don't customize any attribute, for the current
+     * display metrics
+     */
+    @NonNull
+    public static synchronized BadgeStyle getDefault() {
+        final DisplayMetrics metrics = Resources.getSystem().getDisplayMetrics();
+        if (defaultStyle == null || defaultDensity != metrics.density ||
+                defaultScaledDensity != metrics.scaledDensity) {
+            defaultStyle = new Builder().build();
+            defaultDensity = metrics.density;
+            defaultScaledDensity = metrics.scaledDensity;
+        }
+        return defaultStyle;
+    }
+
+    @NonNull
+    public Builder buildUpon() {
+        return new Builder(this);
+    }
+
+    public int getBadgeColor() {
+        return badgeColor;
+    }
+
+    public int getTextColor() {
+        return textColor;
+    }
+
+    @Nullable
+    public Typeface getTypeFace() {
+        return typeface;
+    }
+
+    public float getTextSize() {
+        return textSize;
+    }
+
+    public float getCornerRadius() {
+        return cornerRadius;
+    }
+
+    public float getPaddingLeft() {
+        return paddingLeft;
+    }
+
+    public float getPaddingTop() {
+        return paddingTop;
+    }
+
+    public float getPaddingRight() {
+        return paddingRight;
+    }
+
+    public float getPaddingBottom() {
+        return paddingBottom;
+    }
+
+    public float getPaddingCenter() {
+        return paddingCenter;
+    }
+
+    public int getStrokeWidth() {
+        return strokeWidth;
+    }
+
+    /**
+     * Whether badges of this and the other style with the same content have the same size.
+     */
+    boolean hasSameMetricsAs(BadgeStyle other) {
+        return Float.compare(textSize, other.textSize) == 0 &&
+                Float.compare(paddingLeft, other.paddingLeft) == 0 &&
+                Float.compare(paddingTop, other.paddingTop) == 0 &&
+                Float.compare(paddingRight, other.paddingRight) == 0 &&
+                Float.compare(paddingBottom, other.paddingBottom) == 0 &&
+                Float.compare(paddingCenter, other.paddingCenter) == 0 &&
+                (typeface == null ? other.typeface == null : typeface.equals(other.typeface));
+    }
+
+    /**
+     * Whether badges of this and the other style with the same content cover the same
+     * pixels, i.e. the styles only differ in colors.
+     */
+    boolean hasSameShapeAs(BadgeStyle other) {
+        return shapeHash == other.shapeHash &&
+                strokeWidth == other.strokeWidth &&
+                Float.compare(cornerRadius, other.cornerRadius) == 0 &&
+                hasSameMetricsAs(other);
+    }
+
+    int shapeHashCode() {
+        return shapeHash;
+    }
+
+    private BadgeFont font() {
+        BadgeFont font = this.font;
+        if (font == null) {
+            font = BadgeFont.get(typeface, textSize);
+            this.font = font;
+        }
+        return font;
+    }
+
+    private void ensureRadii() {
+        if (numberR != null) {
+            return;
+        }
+
+        synchronized (this) {
+            if (numberR != null) {
+                return;
+            }
+
+            outerR = new float[]{
+                    cornerRadius, cornerRadius, cornerRadius, cornerRadius,
+                    cornerRadius, cornerRadius, cornerRadius, cornerRadius};
+            outerROfText1 = new float[]{
+                    cornerRadius, cornerRadius, 0f, 0f, 0f, 0f, cornerRadius, cornerRadius};
+            outerROfText2 = new float[]{
+                    0f, 0f, cornerRadius, cornerRadius, cornerRadius, cornerRadius, 0f, 0f};
+
+            // Number badges are fully rounded, whatever the corner radius is
+            final float r = (int) (textSize + paddingTop + paddingBottom);
+            numberR = new float[]{r, r, r, r, r, r, r, r};
+        }
+    }
+
+    /**
+     * The paint used to draw badges of this style, shared by all styles of the same
+     * typeface and text size. It must only be used on the UI thread, and callers set its
+     * color, alpha and color filter before every use.
+     */
+    Paint getPaint() {
+        return font().getPaint();
+    }
+
+    /**
+     * A new paint of this style's font, for rasterizing badges off the UI thread.
+     */
+    Paint newRasterPaint() {
+        return font().newPaint();
+    }
+
+    Paint.FontMetrics getFontMetrics() {
+        return font().getFontMetrics();
+    }
+
+    /**
+     * A thread-safe measurer of this style's font.
+     */
+    PaintTextMeasurer getMeasurer() {
+        return font().getMeasurer();
+    }
+
+    NumberGlyphs getNumberGlyphs() {
+        return font().getNumberGlyphs();
+    }
+
+    float[] getOuterRadii() {
+        ensureRadii();
+        return outerR;
+    }
+
+    float[] getOuterRadiiOfText1() {
+        ensureRadii();
+        return outerROfText1;
+    }
+
+    float[] getOuterRadiiOfText2() {
+        ensureRadii();
+        return outerROfText2;
+    }
+
+    float[] getNumberRadii() {
+        ensureRadii();
+        return numberR;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BadgeStyle)) return false;
+
+        final BadgeStyle other = (BadgeStyle) o;
+        return hash == other.hash &&
+                badgeColor == other.badgeColor &&
+                textColor == other.textColor &&
+                strokeWidth == other.strokeWidth &&
+                Float.compare(cornerRadius, other.cornerRadius) == 0 &&
+                hasSameMetricsAs(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    private static float dipToPixels(DisplayMetrics metrics, float dipValue) {
+        return dipValue * metrics.density + 0.5f;
+    }
+
+    private static float spToPixels(DisplayMetrics metrics, float spValue) {
+        return spValue * metrics.scaledDensity + 0.5f;
+    }
+}
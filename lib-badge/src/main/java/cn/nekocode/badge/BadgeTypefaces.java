@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.support.annotation.FontRes;
+import android.support.annotation.NonNull;
+import android.support.annotation.RequiresApi;
+import android.util.SparseArray;
+
+import java.util.HashMap;
+
+/**
+ * Process-wide registry of badge fonts. Each asset path or font resource is loaded and
+ * parsed once, and all badges using it get the same {@link Typeface} instance, so that
+ * their styles and paints are shared too.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public final class BadgeTypefaces {
+    private static final HashMap<String, Typeface> ASSET_TYPEFACES = new HashMap<>();
+    private static final SparseArray<Typeface> RESOURCE_TYPEFACES = new SparseArray<>();
+    private static AssetManager assets;
+
+    private BadgeTypefaces() {
+    }
+
+    /**
+     * Enables {@link #fromAsset(String)} and {@code typeFaceAsset()} of the builders.
+     */
+    public static synchronized void init(@NonNull Context context) {
+        assets = context.getApplicationContext().getAssets();
+    }
+
+    /**
+     * @throws IllegalStateException if {@link #init} wasn't called
+     */
+    @NonNull
+    public static Typeface fromAsset(@NonNull String path) {
+        final AssetManager assets;
+        synchronized (BadgeTypefaces.class) {
+            assets = BadgeTypefaces.assets;
+        }
+        if (assets == null) {
+            throw new IllegalStateException("BadgeTypefaces.init() must be called before " +
+                    "loading fonts by asset path");
+        }
+        return fromAsset(assets, path);
+    }
+
+    @NonNull
+    public static Typeface fromAsset(@NonNull AssetManager assets, @NonNull String path) {
+        synchronized (ASSET_TYPEFACES) {
+            Typeface typeface = ASSET_TYPEFACES.get(path);
+            if (typeface == null) {
+                typeface = Typeface.createFromAsset(assets, path);
+                ASSET_TYPEFACES.put(path, typeface);
+            }
+            return typeface;
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.O)
+    @NonNull
+    public static Typeface fromResource(@NonNull Context context, @FontRes int resId) {
+        synchronized (RESOURCE_TYPEFACES) {
+            Typeface typeface = RESOURCE_TYPEFACES.get(resId);
+            if (typeface == null) {
+                typeface = context.getResources().getFont(resId);
+                RESOURCE_TYPEFACES.put(resId, typeface);
+            }
+            return typeface;
+        }
+    }
+
+    /**
+     * Forgets the loaded fonts, badges keep the ones they already use.
+     */
+    public static void clear() {
+        synchronized (ASSET_TYPEFACES) {
+            ASSET_TYPEFACES.clear();
+        }
+        synchronized (RESOURCE_TYPEFACES) {
+            RESOURCE_TYPEFACES.clear();
+        }
+    }
+}
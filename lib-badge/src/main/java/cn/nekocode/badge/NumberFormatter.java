@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+/**
+ * Formats badge numbers into char buffers, so that counters can be updated and drawn
+ * without creating strings.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+final class NumberFormatter {
+    /**
+     * Enough for any formatted int, e.g. "-2147483648" or "2147483647+".
+     */
+    static final int MAX_LENGTH = 12;
+
+    private static final char ELLIPSIS = '…';
+    private static final int SMALL_NUMBERS = 1000;
+    private static final String[] SMALL_STRINGS = new String[SMALL_NUMBERS];
+
+    private NumberFormatter() {
+    }
+
+    /**
+     * Writes the number, or its overflow form if it is greater than the max number.
+     *
+     * @param out a buffer of at least {@link #MAX_LENGTH} chars
+     * @return the number of chars written
+     */
+    static int format(int number, int maxNumber, int overflow, char[] out) {
+        if (number <= maxNumber) {
+            return writeInt(number, out, 0);
+        }
+
+        switch (overflow) {
+            case BadgeDrawable.NUMBER_OVERFLOW_PLUS: {
+                final int length = writeInt(maxNumber, out, 0);
+                out[length] = '+';
+                return length + 1;
+            }
+
+            case BadgeDrawable.NUMBER_OVERFLOW_COMPACT:
+                return number < 1000 ? writeInt(number, out, 0) : writeCompact(number, out);
+
+            case BadgeDrawable.NUMBER_OVERFLOW_ELLIPSIS:
+            default:
+                out[0] = ELLIPSIS;
+                return 1;
+        }
+    }
+
+    /**
+     * Writes e.g. "1.2k", "12k", "123k" or "1.2M". Digits are truncated rather than
+     * rounded, so that 999999 doesn't become "1000k".
+     */
+    private static int writeCompact(int number, char[] out) {
+        final int unit;
+        final char suffix;
+        if (number >= 1000000000) {
+            unit = 1000000000;
+            suffix = 'B';
+        } else if (number >= 1000000) {
+            unit = 1000000;
+            suffix = 'M';
+        } else {
+            unit = 1000;
+            suffix = 'k';
+        }
+
+        final int whole = number / unit;
+        int length = writeInt(whole, out, 0);
+        if (whole < 10) {
+            final int tenth = number / (unit / 10) % 10;
+            if (tenth != 0) {
+                out[length++] = '.';
+                out[length++] = (char) ('0' + tenth);
+            }
+        }
+        out[length++] = suffix;
+        return length;
+    }
+
+    private static int writeInt(int number, char[] out, int offset) {
+        long value = number;
+        if (value < 0) {
+            out[offset++] = '-';
+            value = -value;
+        }
+
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + digits;
+    }
+
+    /**
+     * @return the formatted chars as a string, taken from a table for 0 - 999 and "…"
+     */
+    static String toString(char[] chars, int length) {
+        if (length == 1 && chars[0] == ELLIPSIS) {
+            return BadgeLayoutEngine.NUMBER_ELLIPSIS;
+        }
+
+        if (length <= 3 && (length == 1 || chars[0] != '0')) {
+            int value = 0;
+            for (int i = 0; i < length; i++) {
+                final char c = chars[i];
+                if (c < '0' || c > '9') {
+                    return new String(chars, 0, length);
+                }
+                value = value * 10 + (c - '0');
+            }
+
+            String string = SMALL_STRINGS[value];
+            if (string == null) {
+                // A racing thread at worst builds an equal string
+                string = String.valueOf(value);
+                SMALL_STRINGS[value] = string;
+            }
+            return string;
+        }
+
+        return new String(chars, 0, length);
+    }
+}
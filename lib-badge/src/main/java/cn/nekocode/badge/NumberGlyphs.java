@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+/**
+ * Widths of the glyphs formatted numbers are made of, measured once per font. A number is
+ * measured by summing its glyph widths, without calling into the text engine.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+final class NumberGlyphs {
+    private static final String GLYPHS = "0123456789+-.kMB…";
+
+    private final float[] widths = new float[GLYPHS.length()];
+
+    NumberGlyphs(BadgeLayoutEngine.TextMeasurer measurer) {
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = measurer.measureText(GLYPHS.substring(i, i + 1));
+        }
+    }
+
+    float measure(char[] chars, int length) {
+        float width = 0f;
+        for (int i = 0; i < length; i++) {
+            width += width(chars[i]);
+        }
+        return width;
+    }
+
+    float width(char c) {
+        final int index = c >= '0' && c <= '9' ? c - '0' : GLYPHS.indexOf(c);
+        return index >= 0 ? widths[index] : 0f;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * Transition of a number badge from one formatted number to another. The glyph positions
+ * of both numbers are computed once, and every frame only interpolates between them:
+ * glyphs that stay the same slide to their new position, the others roll out and in.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+final class NumberTransition {
+    private final char[] startChars = new char[NumberFormatter.MAX_LENGTH];
+    private final float[] startOffsets = new float[NumberFormatter.MAX_LENGTH];
+    private int startLength;
+    private int startWidth;
+
+    private final char[] endChars = new char[NumberFormatter.MAX_LENGTH];
+    private final float[] endOffsets = new float[NumberFormatter.MAX_LENGTH];
+    private int endLength;
+    private int endWidth;
+
+    private final long durationNanos;
+    private final boolean rollUp;
+    private long startNanos = -1;
+    private float fraction;
+
+    NumberTransition(long durationMillis, boolean rollUp) {
+        durationNanos = Math.max(1, durationMillis) * 1000000L;
+        this.rollUp = rollUp;
+    }
+
+    void setStart(char[] chars, int length, int badgeWidth, NumberGlyphs glyphs) {
+        startLength = copy(chars, length, startChars, startOffsets, glyphs);
+        startWidth = badgeWidth;
+    }
+
+    void setEnd(char[] chars, int length, int badgeWidth, NumberGlyphs glyphs) {
+        endLength = copy(chars, length, endChars, endOffsets, glyphs);
+        endWidth = badgeWidth;
+    }
+
+    /**
+     * Copies the chars and computes the center of every glyph, relative to the center of
+     * the whole text.
+     */
+    private static int copy(char[] chars, int length, char[] outChars, float[] outOffsets,
+                            NumberGlyphs glyphs) {
+        length = Math.min(length, outChars.length);
+        System.arraycopy(chars, 0, outChars, 0, length);
+
+        float x = -glyphs.measure(chars, length) / 2f;
+        for (int i = 0; i < length; i++) {
+            final float width = glyphs.width(chars[i]);
+            outOffsets[i] = x + width / 2f;
+            x += width;
+        }
+        return length;
+    }
+
+    /**
+     * @return false once the transition has finished
+     */
+    boolean update(long frameTimeNanos) {
+        if (startNanos < 0) {
+            startNanos = frameTimeNanos;
+        }
+
+        final float t = Math.min(1f, (float) (frameTimeNanos - startNanos) / durationNanos);
+        // Decelerate
+        fraction = 1f - (1f - t) * (1f - t);
+        return t < 1f;
+    }
+
+    int getBadgeWidth() {
+        return Math.round(startWidth + (endWidth - startWidth) * fraction);
+    }
+
+    /**
+     * Draws the glyphs with a paint aligned to the center. Glyphs are paired from the
+     * right, so that units stay on units.
+     */
+    void draw(Canvas canvas, Paint paint, int color, int alpha, float centerX, float baseline,
+              float rollDistance) {
+        final float roll = rollUp ? rollDistance : -rollDistance;
+        final int colorAlpha = (color >>> 24) * alpha / 255;
+        paint.setColor(color);
+
+        for (int slot = 0, count = Math.max(startLength, endLength); slot < count; slot++) {
+            final int s = startLength - 1 - slot;
+            final int e = endLength - 1 - slot;
+            final float startX = s >= 0 ? startOffsets[s] : endOffsets[e];
+            final float endX = e >= 0 ? endOffsets[e] : startOffsets[s];
+            final float x = centerX + startX + (endX - startX) * fraction;
+
+            if (s >= 0 && e >= 0 && startChars[s] == endChars[e]) {
+                paint.setAlpha(colorAlpha);
+                canvas.drawText(endChars, e, 1, x, baseline, paint);
+                continue;
+            }
+
+            if (s >= 0) {
+                paint.setAlpha((int) (colorAlpha * (1f - fraction)));
+                canvas.drawText(startChars, s, 1, x, baseline - roll * fraction, paint);
+            }
+            if (e >= 0) {
+                paint.setAlpha((int) (colorAlpha * fraction));
+                canvas.drawText(endChars, e, 1, x, baseline + roll * (1f - fraction), paint);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.support.annotation.Nullable;
+
+/**
+ * Measures texts with a {@link Paint}, through the shared {@link TextMeasureCache}.
+ * The paint is set up once and only read afterwards, so a measurer can be used from any
+ * thread without locking, and worker threads never make the UI thread wait.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public class PaintTextMeasurer implements BadgeLayoutEngine.TextMeasurer {
+    private final Paint paint;
+
+    public PaintTextMeasurer(@Nullable Typeface typeface, float textSize) {
+        paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setTypeface(typeface);
+        paint.setTextSize(textSize);
+    }
+
+    @Override
+    public float measureText(String text) {
+        return TextMeasureCache.measureText(paint, text);
+    }
+
+    @Override
+    public int breakText(String text, float maxWidth) {
+        return paint.breakText(text, true, maxWidth, null);
+    }
+}
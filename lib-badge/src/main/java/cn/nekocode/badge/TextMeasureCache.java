@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+/**
+ * Process-wide cache of text widths keyed by (typeface, text size, text), shared by all
+ * badges. Badge texts repeat heavily across list rows, so most measurements are hits.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public final class TextMeasureCache {
+    public static final int DEFAULT_MAX_ENTRIES = 512;
+
+    private static final class Key {
+        private Typeface typeface;
+        private float textSize;
+        private String text;
+
+        private Key() {
+        }
+
+        private Key(Typeface typeface, float textSize, String text) {
+            this.typeface = typeface;
+            this.textSize = textSize;
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            final Key other = (Key) o;
+            return Float.compare(textSize, other.textSize) == 0 &&
+                    (typeface == null ? other.typeface == null : typeface.equals(other.typeface)) &&
+                    text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = typeface != null ? typeface.hashCode() : 0;
+            result = 31 * result + Float.floatToIntBits(textSize);
+            result = 31 * result + text.hashCode();
+            return result;
+        }
+    }
+
+    private static final BadgeLruCache<Key, Float> CACHE =
+            new BadgeLruCache<>(DEFAULT_MAX_ENTRIES);
+
+    // Reused for lookups under the class lock, so that hits don't allocate a key
+    private static final Key PROBE = new Key();
+
+    private TextMeasureCache() {
+    }
+
+    static float measureText(Paint paint, String text) {
+        final Typeface typeface = paint.getTypeface();
+        final float textSize = paint.getTextSize();
+
+        synchronized (TextMeasureCache.class) {
+            PROBE.typeface = typeface;
+            PROBE.textSize = textSize;
+            PROBE.text = text;
+
+            final Float cached = CACHE.get(PROBE);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        // Measured outside the lock, so that threads missing other texts don't wait on it.
+        // Threads missing the same text at once all measure it, which is harmless.
+        final float width = paint.measureText(text);
+        CACHE.put(new Key(typeface, textSize, text), width);
+        return width;
+    }
+
+    public static void setMaxEntries(int maxEntries) {
+        CACHE.resize(maxEntries);
+    }
+
+    public static int getMaxEntries() {
+        return (int) CACHE.maxSize();
+    }
+
+    public static int getEntryCount() {
+        return CACHE.entryCount();
+    }
+
+    public static long getHitCount() {
+        return CACHE.hitCount();
+    }
+
+    public static long getMissCount() {
+        return CACHE.missCount();
+    }
+
+    public static long getEvictionCount() {
+        return CACHE.evictionCount();
+    }
+
+    public static void clear() {
+        CACHE.evictAll();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+/**
+ * Ellipsizes a text to a given width.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+final class TextTruncator {
+    private static final String[] SUFFIXES = {"...", "..", ".", ""};
+
+    private TextTruncator() {
+    }
+
+    /**
+     * Cuts the text so that it and the longest possible "..." suffix fit the width. The
+     * number of kept chars is found by a single {@code breakText} pass instead of
+     * re-measuring the text once per dropped char.
+     */
+    static String ellipsize(BadgeLayoutEngine.TextMeasurer measurer, String text, float width) {
+        return ellipsize(measurer, text, width, null);
+    }
+
+    /**
+     * @param iterations if not null, its first element is increased by the number of
+     *                   tried suffixes
+     */
+    static String ellipsize(BadgeLayoutEngine.TextMeasurer measurer, String text, float width,
+                            int[] iterations) {
+        if (measurer.measureText(text) <= width)
+            return text;
+
+        for (String suffix : SUFFIXES) {
+            if (iterations != null)
+                iterations[0]++;
+
+            final float available = width - measurer.measureText(suffix);
+            if (available < 0)
+                continue;
+
+            int count = measurer.breakText(text, available);
+            if (count > 0 && Character.isHighSurrogate(text.charAt(count - 1)))
+                count--;
+
+            return count > 0 ? text.substring(0, count) + suffix : suffix;
+        }
+
+        return "";
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counts the bytes allocated by the current thread, on JVMs that support it.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+final class Allocations {
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private Allocations() {
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+
+        final com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!sunThreads.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        sunThreads.setThreadAllocatedMemoryEnabled(true);
+        return sunThreads;
+    }
+
+    static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    /**
+     * @return the bytes allocated by running the task the given number of times. Callers
+     * warm the task up first, so that class loading and the JIT aren't counted.
+     */
+    static long measure(Runnable task, int count) {
+        final long threadId = Thread.currentThread().getId();
+
+        // Reading the counter may allocate itself
+        final long calibrationStart = THREADS.getThreadAllocatedBytes(threadId);
+        final long calibration = THREADS.getThreadAllocatedBytes(threadId) - calibrationStart;
+
+        final long start = THREADS.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < count; i++) {
+            task.run();
+        }
+        return THREADS.getThreadAllocatedBytes(threadId) - start - calibration;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class BadgeDrawableTest {
+    private static final int POST_COUNT = 100;
+
+    private static final class CountingMetrics extends BadgeMetrics {
+        int measureCount;
+
+        @Override
+        public void onMeasure(@NonNull BadgeDrawable badge, long durationNanos) {
+            measureCount++;
+        }
+    }
+
+    private static final class CountingCallback implements Drawable.Callback {
+        int invalidateCount;
+
+        @Override
+        public void invalidateDrawable(@NonNull Drawable who) {
+            invalidateCount++;
+        }
+
+        @Override
+        public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+        }
+
+        @Override
+        public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+        }
+    }
+
+    @Test
+    public void postsBeforeAFrameAreCoalesced() throws InterruptedException {
+        final BadgeDrawable badge = new BadgeDrawable.Builder()
+                .type(BadgeDrawable.TYPE_NUMBER)
+                .number(0)
+                .maxNumber(POST_COUNT)
+                .build();
+        badge.setBounds(0, 0, 200, 60);
+        final Canvas canvas = new NoOpCanvas();
+        badge.draw(canvas);
+
+        final CountingMetrics metrics = new CountingMetrics();
+        final CountingCallback callback = new CountingCallback();
+        badge.setMetrics(metrics);
+        badge.setCallback(callback);
+
+        final Thread poster = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= POST_COUNT; i++) {
+                    badge.postNumber(i);
+                }
+            }
+        });
+        poster.start();
+        poster.join();
+
+        // Nothing is applied before the frame
+        assertEquals(0, callback.invalidateCount);
+        assertEquals(0, badge.getNumber());
+
+        Robolectric.getForegroundThreadScheduler().advanceBy(100, TimeUnit.MILLISECONDS);
+        badge.draw(canvas);
+
+        assertEquals(POST_COUNT, badge.getNumber());
+        assertEquals(1, callback.invalidateCount);
+        assertEquals(1, metrics.measureCount);
+    }
+}
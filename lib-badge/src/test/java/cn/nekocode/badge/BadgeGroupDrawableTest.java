@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class BadgeGroupDrawableTest {
+    private static final int BADGE_COUNT = 8;
+
+    private static final class CountingCallback implements Drawable.Callback {
+        int invalidateCount;
+
+        @Override
+        public void invalidateDrawable(@NonNull Drawable who) {
+            invalidateCount++;
+        }
+
+        @Override
+        public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+        }
+
+        @Override
+        public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+        }
+    }
+
+    @Test
+    public void layoutDoesNotInvalidateTheGroup() {
+        final BadgeGroupDrawable.Builder builder = new BadgeGroupDrawable.Builder()
+                .layout(BadgeGroupDrawable.LAYOUT_WRAP)
+                .spacing(4);
+        for (int i = 0; i < BADGE_COUNT; i++) {
+            builder.add(new BadgeDrawable.Builder()
+                    .type(BadgeDrawable.TYPE_NUMBER)
+                    .number(i)
+                    .build());
+        }
+        final BadgeGroupDrawable group = builder.build();
+        final CountingCallback callback = new CountingCallback();
+        group.setCallback(callback);
+        final Canvas canvas = new NoOpCanvas();
+
+        // Lays the badges out, moves them and collapses the ones that don't fit
+        group.setBounds(0, 0, group.getIntrinsicWidth() / 2, group.getIntrinsicHeight());
+        group.draw(canvas);
+        assertTrue(group.getCollapsedCount() > 0);
+        assertEquals(0, callback.invalidateCount);
+
+        // Lays them out again at other positions, only resizing the group invalidates it
+        group.setBounds(10, 10, 10 + group.getIntrinsicWidth() / 3, 10 + group.getIntrinsicHeight());
+        final int invalidateCount = callback.invalidateCount;
+        group.draw(canvas);
+        group.draw(canvas);
+        assertEquals(invalidateCount, callback.invalidateCount);
+
+        // A change of a badge still does
+        group.getBadge(0).setNumber(BADGE_COUNT);
+        assertEquals(invalidateCount + 1, callback.invalidateCount);
+    }
+}
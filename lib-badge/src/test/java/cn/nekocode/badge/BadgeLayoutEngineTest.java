@@ -0,0 +1,278 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public class BadgeLayoutEngineTest {
+    private static final float TEXT_SIZE = 20f;
+    private static final float PADDING_LEFT = 4f;
+    private static final float PADDING_TOP = 2f;
+    private static final float PADDING_RIGHT = 4f;
+    private static final float PADDING_BOTTOM = 2f;
+    private static final float PADDING_CENTER = 6f;
+    private static final int BADGE_HEIGHT = 24;
+
+    /**
+     * Every char is 10px wide, so that expected sizes can be worked out by hand.
+     */
+    private static final class FixedAdvanceMeasurer implements BadgeLayoutEngine.TextMeasurer {
+        static final float ADVANCE = 10f;
+
+        @Override
+        public float measureText(String text) {
+            return text.length() * ADVANCE;
+        }
+
+        @Override
+        public int breakText(String text, float maxWidth) {
+            return Math.min(text.length(), (int) (maxWidth / ADVANCE));
+        }
+    }
+
+    private static final BadgeLayoutEngine.TextMeasurer MEASURER = new FixedAdvanceMeasurer();
+
+    private static BadgeLayoutEngine.Params.Builder params(int type) {
+        return new BadgeLayoutEngine.Params.Builder()
+                .type(type)
+                .textSize(TEXT_SIZE)
+                .padding(PADDING_LEFT, PADDING_TOP, PADDING_RIGHT, PADDING_BOTTOM, PADDING_CENTER);
+    }
+
+    private static BadgeLayoutEngine.Result layout(BadgeLayoutEngine.Params.Builder params,
+                                                   int boundsWidth) {
+        return BadgeLayoutEngine.layout(params.build(), MEASURER, boundsWidth);
+    }
+
+    @Test
+    public void numberIsAtLeastAsWideAsHigh() {
+        final BadgeLayoutEngine.Result result =
+                layout(params(BadgeDrawable.TYPE_NUMBER).number(5), 0);
+
+        assertEquals("5", result.getText1());
+        assertEquals("", result.getText2());
+        assertEquals(28, result.getBadgeWidth());
+        assertEquals(BADGE_HEIGHT, result.getBadgeHeight());
+        assertEquals(28, result.getNaturalWidth());
+    }
+
+    @Test
+    public void numberGrowsWithItsDigits() {
+        final BadgeLayoutEngine.Result result =
+                layout(params(BadgeDrawable.TYPE_NUMBER).number(87).maxNumber(999), 0);
+
+        assertEquals("87", result.getText1());
+        assertEquals(28, result.getBadgeWidth());
+
+        final BadgeLayoutEngine.Result wider =
+                layout(params(BadgeDrawable.TYPE_NUMBER).number(876).maxNumber(999), 0);
+
+        assertEquals("876", wider.getText1());
+        assertEquals(38, wider.getBadgeWidth());
+    }
+
+    @Test
+    public void numberIgnoresBounds() {
+        final BadgeLayoutEngine.Result result =
+                layout(params(BadgeDrawable.TYPE_NUMBER).number(42), 10);
+
+        assertEquals("42", result.getText1());
+        assertEquals(28, result.getBadgeWidth());
+    }
+
+    @Test
+    public void numberOverflowEllipsis() {
+        final BadgeLayoutEngine.Result result = layout(params(BadgeDrawable.TYPE_NUMBER)
+                .number(100)
+                .numberOverflow(BadgeDrawable.NUMBER_OVERFLOW_ELLIPSIS), 0);
+
+        assertEquals(BadgeLayoutEngine.NUMBER_ELLIPSIS, result.getText1());
+        assertEquals(28, result.getBadgeWidth());
+    }
+
+    @Test
+    public void numberOverflowPlus() {
+        final BadgeLayoutEngine.Result result = layout(params(BadgeDrawable.TYPE_NUMBER)
+                .number(100)
+                .numberOverflow(BadgeDrawable.NUMBER_OVERFLOW_PLUS), 0);
+
+        assertEquals("99+", result.getText1());
+        assertEquals(38, result.getBadgeWidth());
+    }
+
+    @Test
+    public void numberOverflowCompact() {
+        final int[] numbers = {123, 1234, 12000, 999999, 1200000, 2100000000};
+        final String[] texts = {"123", "1.2k", "12k", "999k", "1.2M", "2.1B"};
+
+        for (int i = 0; i < numbers.length; i++) {
+            final BadgeLayoutEngine.Result result = layout(params(BadgeDrawable.TYPE_NUMBER)
+                    .number(numbers[i])
+                    .numberOverflow(BadgeDrawable.NUMBER_OVERFLOW_COMPACT), 0);
+
+            assertEquals(texts[i], result.getText1());
+            assertEquals((int) (Math.max(TEXT_SIZE, texts[i].length() * FixedAdvanceMeasurer.ADVANCE) +
+                    PADDING_LEFT + PADDING_RIGHT), result.getBadgeWidth());
+        }
+    }
+
+    @Test
+    public void numberTextIsFormattedOnce() {
+        final BadgeLayoutEngine.Result result = layout(params(BadgeDrawable.TYPE_NUMBER)
+                .number(1234)
+                .maxNumber(9999), 0);
+
+        assertSame(result.getText1(), result.getText1());
+    }
+
+    @Test
+    public void unknownTypeIsLaidOutAsNumber() {
+        final BadgeLayoutEngine.Result result = layout(params(0).number(7).text1("LEVEL"), 0);
+
+        assertEquals("7", result.getText1());
+        assertEquals(28, result.getBadgeWidth());
+    }
+
+    @Test
+    public void oneTextFitsItsText() {
+        final BadgeLayoutEngine.Result result =
+                layout(params(BadgeDrawable.TYPE_ONLY_ONE_TEXT).text1("LEVEL"), 0);
+
+        assertEquals("LEVEL", result.getText1());
+        assertEquals("", result.getText2());
+        assertEquals(58, result.getBadgeWidth());
+        assertEquals(BADGE_HEIGHT, result.getBadgeHeight());
+        assertEquals(58, result.getNaturalWidth());
+        assertEquals(50, result.getText1Width());
+    }
+
+    @Test
+    public void oneTextIsNotStretchedByWiderBounds() {
+        final BadgeLayoutEngine.Result result =
+                layout(params(BadgeDrawable.TYPE_ONLY_ONE_TEXT).text1("LEVEL"), 100);
+
+        assertEquals("LEVEL", result.getText1());
+        assertEquals(58, result.getBadgeWidth());
+    }
+
+    @Test
+    public void oneTextIsTruncatedToBounds() {
+        final BadgeLayoutEngine.Result result =
+                layout(params(BadgeDrawable.TYPE_ONLY_ONE_TEXT).text1("LEVEL"), 48);
+
+        assertEquals("L...", result.getText1());
+        assertEquals(48, result.getBadgeWidth());
+        assertEquals(58, result.getNaturalWidth());
+        assertEquals(40, result.getText1Width());
+    }
+
+    @Test
+    public void truncationFallsBackToShorterSuffixes() {
+        // 25px leave room for ".." but not for "...", and for no char of the text
+        final BadgeLayoutEngine.Result result =
+                layout(params(BadgeDrawable.TYPE_ONLY_ONE_TEXT).text1("LEVEL"), 33);
+
+        assertEquals("..", result.getText1());
+
+        // 5px leave room for nothing at all
+        final BadgeLayoutEngine.Result empty =
+                layout(params(BadgeDrawable.TYPE_ONLY_ONE_TEXT).text1("LEVEL"), 13);
+
+        assertEquals("", empty.getText1());
+    }
+
+    @Test
+    public void truncationDoesNotSplitSurrogatePairs() {
+        // The cut would fall between the two chars of the emoji
+        final BadgeLayoutEngine.Result result =
+                layout(params(BadgeDrawable.TYPE_ONLY_ONE_TEXT).text1("ab😀cdef"), 68);
+
+        assertEquals("ab...", result.getText1());
+    }
+
+    @Test
+    public void oneTextInTooNarrowBounds() {
+        final BadgeLayoutEngine.Result result =
+                layout(params(BadgeDrawable.TYPE_ONLY_ONE_TEXT).text1("LEVEL"), 5);
+
+        assertEquals("", result.getText1());
+        assertEquals(0, result.getText1Width());
+        assertEquals(5, result.getBadgeWidth());
+    }
+
+    @Test
+    public void twoTextsFitTheirTexts() {
+        for (int type : new int[]{BadgeDrawable.TYPE_WITH_TWO_TEXT,
+                BadgeDrawable.TYPE_WITH_TWO_TEXT_COMPLEMENTARY}) {
+            final BadgeLayoutEngine.Result result =
+                    layout(params(type).text1("LEVEL").text2("12345"), 0);
+
+            assertEquals("LEVEL", result.getText1());
+            assertEquals("12345", result.getText2());
+            assertEquals(114, result.getBadgeWidth());
+            assertEquals(BADGE_HEIGHT, result.getBadgeHeight());
+            assertEquals(50, result.getText1Width());
+            assertEquals(50, result.getText2Width());
+        }
+    }
+
+    @Test
+    public void twoTextsTruncateTheSecondTextFirst() {
+        for (int type : new int[]{BadgeDrawable.TYPE_WITH_TWO_TEXT,
+                BadgeDrawable.TYPE_WITH_TWO_TEXT_COMPLEMENTARY}) {
+            final BadgeLayoutEngine.Result result =
+                    layout(params(type).text1("LEVEL").text2("12345"), 104);
+
+            assertEquals("LEVEL", result.getText1());
+            assertEquals("1...", result.getText2());
+            assertEquals(104, result.getBadgeWidth());
+            assertEquals(114, result.getNaturalWidth());
+            assertEquals(40, result.getText2Width());
+        }
+    }
+
+    @Test
+    public void twoTextsDropTheSecondTextWhenTheFirstDoesNotFit() {
+        for (int type : new int[]{BadgeDrawable.TYPE_WITH_TWO_TEXT,
+                BadgeDrawable.TYPE_WITH_TWO_TEXT_COMPLEMENTARY}) {
+            final BadgeLayoutEngine.Result result =
+                    layout(params(type).text1("LEVEL").text2("12345"), 50);
+
+            assertEquals("L...", result.getText1());
+            assertEquals("", result.getText2());
+            assertEquals(42, result.getText1Width());
+            assertEquals(0, result.getText2Width());
+            assertEquals(50, result.getBadgeWidth());
+        }
+    }
+
+    @Test
+    public void nullTextsAreEmpty() {
+        final BadgeLayoutEngine.Result result =
+                layout(params(BadgeDrawable.TYPE_WITH_TWO_TEXT), 0);
+
+        assertEquals("", result.getText1());
+        assertEquals("", result.getText2());
+        assertEquals(14, result.getBadgeWidth());
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+public class BadgeMetricsHistogramTest {
+    private static final int[] CACHES = {
+            BadgeMetrics.CACHE_BITMAP,
+            BadgeMetrics.CACHE_PICTURE,
+            BadgeMetrics.CACHE_ATLAS,
+            BadgeMetrics.CACHE_ALPHA_MASK};
+
+    @Test
+    public void countsEveryCacheSeparately() {
+        final BadgeMetricsHistogram histogram = new BadgeMetricsHistogram();
+        for (int i = 0; i < CACHES.length; i++) {
+            for (int j = 0; j <= i; j++) {
+                histogram.onCacheLookup(null, CACHES[i], true);
+            }
+            histogram.onCacheLookup(null, CACHES[i], false);
+        }
+
+        for (int i = 0; i < CACHES.length; i++) {
+            assertEquals(i + 1, histogram.getCacheHitCount(CACHES[i]));
+            assertEquals(1, histogram.getCacheMissCount(CACHES[i]));
+        }
+    }
+
+    @Test
+    public void resetClearsEveryCache() {
+        final BadgeMetricsHistogram histogram = new BadgeMetricsHistogram();
+        for (int cache : CACHES) {
+            histogram.onCacheLookup(null, cache, true);
+            histogram.onCacheLookup(null, cache, false);
+        }
+
+        histogram.reset();
+
+        for (int cache : CACHES) {
+            assertEquals(0, histogram.getCacheHitCount(cache));
+            assertEquals(0, histogram.getCacheMissCount(cache));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class BadgePoolTest {
+    private static final int ACQUIRE_COUNT = 1000;
+
+    /**
+     * Alternates between two builders, so that every reconfiguration changes the badge.
+     */
+    private static final class Builders {
+        private final BadgeDrawable.Builder[] builders;
+        private int next;
+
+        private Builders(BadgeDrawable.Builder first, BadgeDrawable.Builder second) {
+            builders = new BadgeDrawable.Builder[]{first, second};
+        }
+
+        private BadgeDrawable.Builder next() {
+            return builders[next++ & 1];
+        }
+    }
+
+    @Test
+    public void acquireReconfiguresReleasedBadges() {
+        final BadgePool pool = new BadgePool(1);
+        final BadgeDrawable badge = pool.acquire(numberBuilder(1));
+        pool.release(badge);
+
+        final BadgeDrawable reused = pool.acquire(numberBuilder(2).badgeColor(0xff00ff00));
+        assertSame(badge, reused);
+        assertEquals(2, reused.getNumber());
+        assertEquals(0xff00ff00, reused.getBadgeColor());
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(1, pool.getReusedCount());
+    }
+
+    @Test
+    public void pooledAcquireAllocatesLessThanBuild() {
+        assumeTrue(Allocations.isSupported());
+
+        final Builders[] cases = {
+                new Builders(numberBuilder(1), numberBuilder(2)),
+                new Builders(textBuilder("10"), textBuilder("11")),
+                new Builders(numberBuilder(1).textSize(30f), numberBuilder(2).textSize(30f))};
+
+        for (final Builders builders : cases) {
+            final BadgePool pool = new BadgePool(1);
+            final Runnable acquire = new Runnable() {
+                @Override
+                public void run() {
+                    pool.release(pool.acquire(builders.next()));
+                }
+            };
+            final Runnable build = new Runnable() {
+                @Override
+                public void run() {
+                    builders.next().build();
+                }
+            };
+
+            // Warm up the JIT
+            Allocations.measure(acquire, ACQUIRE_COUNT);
+            Allocations.measure(build, ACQUIRE_COUNT);
+
+            final long pooledBytes = Allocations.measure(acquire, ACQUIRE_COUNT);
+            final long builtBytes = Allocations.measure(build, ACQUIRE_COUNT);
+            assertTrue("pooled " + pooledBytes + " bytes, built " + builtBytes + " bytes",
+                    pooledBytes < builtBytes);
+        }
+    }
+
+    private static BadgeDrawable.Builder numberBuilder(int number) {
+        return new BadgeDrawable.Builder()
+                .type(BadgeDrawable.TYPE_NUMBER)
+                .number(number);
+    }
+
+    private static BadgeDrawable.Builder textBuilder(String text2) {
+        return new BadgeDrawable.Builder()
+                .type(BadgeDrawable.TYPE_WITH_TWO_TEXT)
+                .text1("LEVEL")
+                .text2(text2);
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2017. nekocode (nekocode.cn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.nekocode.badge;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.support.annotation.NonNull;
+import android.text.SpannableString;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks the draw path of every render mode, once the badge is measured and its cached
+ * rendering, if any, is in place. The time per operation is printed along, run with
+ * {@code --info} to see it; it is Robolectric's, not a device's.
+ *
+ * @author nekocode (nekocode.cn@gmail.com)
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@Config(sdk = 28)
+public class BadgeRenderModeTest {
+    private static final int DRAW_COUNT = 1000;
+    // A spannable string and its span, the badge's rendering must not be copied
+    private static final int MAX_SPANNABLE_BYTES = 512;
+    private static final int[] TYPES = {
+            BadgeDrawable.TYPE_NUMBER,
+            BadgeDrawable.TYPE_ONLY_ONE_TEXT,
+            BadgeDrawable.TYPE_WITH_TWO_TEXT,
+            BadgeDrawable.TYPE_WITH_TWO_TEXT_COMPLEMENTARY};
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{1}")
+    public static Collection<Object[]> renderModes() {
+        return Arrays.asList(new Object[][]{
+                {BadgeDrawable.RENDER_MODE_DIRECT, "DIRECT"},
+                {BadgeDrawable.RENDER_MODE_BITMAP_CACHE, "BITMAP_CACHE"},
+                {BadgeDrawable.RENDER_MODE_PICTURE, "PICTURE"},
+                {BadgeDrawable.RENDER_MODE_ATLAS, "ATLAS"},
+                {BadgeDrawable.RENDER_MODE_ALPHA_MASK, "ALPHA_MASK"}});
+    }
+
+    private static final class CacheMetrics extends BadgeMetrics {
+        int hitCount;
+        int missCount;
+
+        @Override
+        public void onCacheLookup(@NonNull BadgeDrawable badge, int cache, boolean hit) {
+            if (hit) {
+                hitCount++;
+            } else {
+                missCount++;
+            }
+        }
+    }
+
+    private final int renderMode;
+    private final String renderModeName;
+
+    public BadgeRenderModeTest(int renderMode, String renderModeName) {
+        this.renderMode = renderMode;
+        this.renderModeName = renderModeName;
+    }
+
+    @Test
+    public void drawDoesNotAllocate() {
+        assumeTrue(Allocations.isSupported());
+
+        final Canvas canvas = new NoOpCanvas();
+        for (int type : TYPES) {
+            final BadgeDrawable badge = newBadge(type);
+            final CacheMetrics metrics = new CacheMetrics();
+            badge.setMetrics(metrics);
+
+            // The first draw measures the badge and fills its cache, the others warm up the JIT
+            for (int i = 0; i < DRAW_COUNT; i++) {
+                badge.draw(canvas);
+            }
+            final int missCount = metrics.missCount;
+
+            final long start = System.nanoTime();
+            final long bytes = Allocations.measure(new Runnable() {
+                @Override
+                public void run() {
+                    badge.draw(canvas);
+                }
+            }, DRAW_COUNT);
+            report("draw", type, System.nanoTime() - start, bytes);
+            // Any allocation per draw would add up to at least 16 bytes per draw
+            assertTrue(renderModeName + " type " + type + " allocated " + bytes + " bytes in " +
+                    DRAW_COUNT + " draws", bytes < DRAW_COUNT);
+            // Only the cache-hit path was measured
+            assertEquals(renderModeName + " type " + type, missCount, metrics.missCount);
+            if (renderMode != BadgeDrawable.RENDER_MODE_DIRECT) {
+                assertTrue(renderModeName + " type " + type + " never hit its cache",
+                        metrics.hitCount >= DRAW_COUNT);
+            }
+        }
+    }
+
+    @Test
+    public void spannableDoesNotCopyTheBadge() {
+        assumeTrue(Allocations.isSupported());
+
+        final Canvas canvas = new NoOpCanvas();
+        final Paint paint = new Paint();
+        for (int type : TYPES) {
+            final BadgeDrawable badge = newBadge(type);
+            final SpannableString spannable = badge.toSpannable();
+            final BadgeSpan span = spannable.getSpans(0, 1, BadgeSpan.class)[0];
+            final CacheMetrics metrics = new CacheMetrics();
+            badge.setMetrics(metrics);
+
+            final Runnable toSpannable = new Runnable() {
+                @Override
+                public void run() {
+                    badge.toSpannable();
+                }
+            };
+            final Runnable drawSpan = new Runnable() {
+                @Override
+                public void run() {
+                    span.draw(canvas, spannable, 0, 1, 0f, 0, 40, 60, paint);
+                }
+            };
+            // The first span draw sizes the badge to its intrinsic size, the others warm up
+            // the JIT
+            Allocations.measure(toSpannable, DRAW_COUNT);
+            Allocations.measure(drawSpan, DRAW_COUNT);
+            final int missCount = metrics.missCount;
+
+            long start = System.nanoTime();
+            final long spannableBytes = Allocations.measure(toSpannable, DRAW_COUNT);
+            report("toSpannable", type, System.nanoTime() - start, spannableBytes);
+            assertTrue(renderModeName + " type " + type + " allocated " +
+                            spannableBytes / DRAW_COUNT + " bytes per spannable",
+                    spannableBytes < MAX_SPANNABLE_BYTES * DRAW_COUNT);
+
+            start = System.nanoTime();
+            final long drawBytes = Allocations.measure(drawSpan, DRAW_COUNT);
+            report("span draw", type, System.nanoTime() - start, drawBytes);
+            assertTrue(renderModeName + " type " + type + " allocated " + drawBytes +
+                    " bytes in " + DRAW_COUNT + " span draws", drawBytes < DRAW_COUNT);
+            assertEquals(renderModeName + " type " + type, missCount, metrics.missCount);
+        }
+    }
+
+    private void report(String operation, int type, long nanos, long bytes) {
+        System.out.println(renderModeName + " type " + type + " " + operation + ": " +
+                nanos / DRAW_COUNT + " ns/op, " + bytes / DRAW_COUNT + " bytes/op");
+    }
+
+    private BadgeDrawable newBadge(int type) {
+        final BadgeDrawable badge = new BadgeDrawable.Builder()
+                .type(type)
+                .number(42)
+                .text1("LEVEL")
+                .text2("10")
+                .renderMode(renderMode)
+                .build();
+        badge.setBounds(0, 0, 200, 60);
+        return badge;
+    }
+}
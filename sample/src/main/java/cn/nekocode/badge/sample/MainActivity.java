@@ -1,15 +1,15 @@
 package cn.nekocode.badge.sample;
 
 import android.content.Context;
-import android.graphics.Typeface;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
-import android.text.SpannableString;
-import android.text.TextUtils;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import cn.nekocode.badge.BadgeDrawable;
+import cn.nekocode.badge.BadgeInflater;
+import cn.nekocode.badge.BadgeSpannableBuilder;
+import cn.nekocode.badge.BadgeTypefaces;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -17,6 +17,7 @@ public class MainActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        BadgeTypefaces.init(this);
         final TextView textView = (TextView) findViewById(R.id.tvHelloWorld);
         final ImageView imageView = (ImageView) findViewById(R.id.imageView);
 
@@ -26,12 +27,7 @@ public class MainActivity extends AppCompatActivity {
                         .number(9)
                         .build();
 
-        final BadgeDrawable drawable2 =
-                new BadgeDrawable.Builder()
-                        .type(BadgeDrawable.TYPE_ONLY_ONE_TEXT)
-                        .badgeColor(0xff336699)
-                        .text1("VIP")
-                        .build();
+        final BadgeDrawable drawable2 = BadgeInflater.inflate(this, R.xml.badge_vip);
 
         final BadgeDrawable drawable3 =
                 new BadgeDrawable.Builder()
@@ -53,25 +49,26 @@ public class MainActivity extends AppCompatActivity {
                 new BadgeDrawable.Builder()
                         .type(BadgeDrawable.TYPE_NUMBER)
                         .number(999)
+                        .numberOverflow(BadgeDrawable.NUMBER_OVERFLOW_PLUS)
                         .badgeColor(0xff336699)
                         .build();
 
-        SpannableString spannableString =
-                new SpannableString(TextUtils.concat(
-                        "TextView: ",
-                        drawable.toSpannable(),
-                        " ",
-                        drawable2.toSpannable(),
-                        " ",
-                        drawable3.toSpannable(),
-                        " ",
-                        drawable4.toSpannable(),
-                        " ",
-                        drawable5.toSpannable()
-                ));
+        final CharSequence text =
+                new BadgeSpannableBuilder()
+                        .append("TextView: ")
+                        .append(drawable)
+                        .append(" ")
+                        .append(drawable2)
+                        .append(" ")
+                        .append(drawable3)
+                        .append(" ")
+                        .append(drawable4)
+                        .append(" ")
+                        .append(drawable5)
+                        .build();
 
         if (textView != null) {
-            textView.setText(spannableString);
+            textView.setText(text);
         }
 
         if (imageView != null) {
@@ -82,7 +79,7 @@ public class MainActivity extends AppCompatActivity {
                             .textSize(sp2px(this, 14))
                             .text1("Author")
                             .text2("Nekocode")
-                            .typeFace(Typeface.createFromAsset(getAssets(),"fonts/code-bold.otf"))
+                            .typeFaceAsset("fonts/code-bold.otf")
                             .build();
 
             imageView.setImageDrawable(drawable6);